@@ -8,6 +8,7 @@ import morgan from "morgan";
 import cookieParser from "cookie-parser";
 import path from "path";
 import bodyParser from "body-parser"; 
+import compression from "compression";
 
 // our port to the PORT environment variable, or 3000 by default if the env is not configured.
 const PORT = process.env.PORT ?? 3000;
@@ -29,6 +30,8 @@ app.use(bodyParser.json());
 app.use(bodyParser.urlencoded({ extended: true }));
 
 app.use(morgan("dev"));
+// gzip / deflate compressible responses (such as the JSON user list) for clients that send Accept-Encoding
+app.use(compression());
 app.use(cookieParser());
 app.use(
   cors({
@@ -0,0 +1,78 @@
+import { EventEmitter } from "events";
+
+/**
+ * In-memory feed of user changes (created, updated, deleted), streamed to admin clients by GET /api/users/events.
+ *
+ * Every event gets an id of the form "<epoch>-<sequence>". The epoch changes whenever the server restarts, so a
+ * client reconnecting with an id from an earlier run can be told to reload instead of silently missing events.
+ * The most recent events are kept so a client that reconnects after a short drop can catch up from its last id.
+ */
+
+// Number of recent events kept for clients that reconnect
+const HISTORY_SIZE = 1000;
+
+const epoch = Date.now().toString(36);
+let sequence = 0;
+const history = [];
+const emitter = new EventEmitter();
+emitter.setMaxListeners(0); // One listener per connected admin client
+
+/**
+ * Records a change to a user and sends it to every subscriber.
+ *
+ * @param {string} type one of "user-created", "user-updated" or "user-deleted"
+ * @param {*} data the user without its password, or { id } for a deleted user
+ */
+export function publishUserEvent(type, data) {
+  const event = { id: `${epoch}-${++sequence}`, sequence, type, data };
+  history.push(event);
+  if (history.length > HISTORY_SIZE) {
+    history.shift();
+  }
+  emitter.emit("event", event);
+}
+
+/**
+ * Gets the id of the latest event, which a client sends back as Last-Event-ID to resume after it.
+ */
+export function getLastEventId() {
+  return `${epoch}-${sequence}`;
+}
+
+/**
+ * Gets the events published after the given event id.
+ *
+ * @param {string} lastEventId the id of the last event a client received
+ * @returns the missed events in order, or null if they are no longer known: the id is from an earlier run of the
+ *   server, is malformed, or is older than the kept history.
+ */
+export function getEventsSince(lastEventId) {
+  const [eventEpoch, eventSequence] = String(lastEventId).split("-");
+  const lastSequence = parseInt(eventSequence);
+  if (eventEpoch !== epoch || isNaN(lastSequence) || lastSequence > sequence) {
+    return null;
+  }
+  const oldestKept = history.length > 0 ? history[0].sequence : sequence + 1;
+  if (lastSequence < oldestKept - 1) {
+    return null;
+  }
+  return history.filter((event) => event.sequence > lastSequence);
+}
+
+/**
+ * Calls the listener with every event published from now on.
+ *
+ * @returns a function that removes the listener
+ */
+export function subscribeToUserEvents(listener) {
+  emitter.on("event", listener);
+  return () => emitter.off("event", listener);
+}
+
+/**
+ * Returns a copy of the user that is safe to publish, without the password hash.
+ */
+export function toPublicUser(user) {
+  const { password, ...publicUser } = user;
+  return publicUser;
+}
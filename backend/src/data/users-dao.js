@@ -1,6 +1,7 @@
 import yup from "yup";
 import { getDatabase } from "./database.js";
 import { updateDatabase } from "./util.js";
+import { publishUserEvent, toPublicUser } from "./user-events.js";
 import bcrypt from 'bcrypt';
 
 const SALT_ROUNDS = 10;
@@ -82,6 +83,14 @@ export async function updateUser(id, udpateData) {
   const db = await getDatabase();
   const dbResult = await updateDatabase(db, "Users", parsedUpdateData, id);
 
+  // Let connected admin clients know about the new values
+  if (dbResult.changes > 0) {
+    const user = await getUserById(id);
+    if (user) {
+      publishUserEvent("user-updated", toPublicUser(user));
+    }
+  }
+
   // Return true if changes applied, false otherwise
   return dbResult.changes > 0;
 }
@@ -97,6 +106,25 @@ export async function getAllUsers() {
     throw error;
   }
 }
+
+/**
+ * Gets one page of users ordered by id, using keyset pagination so each page costs the same no matter how deep it is.
+ *
+ * @param {number} limit the maximum number of users to return
+ * @param {number} afterId only users with an id greater than this are returned
+ * @returns the users in the page, which is shorter than limit only on the last page
+ */
+export async function getUsersPage(limit, afterId = 0) {
+  const db = await getDatabase();
+
+  try {
+    return await db.all("SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?", [afterId, limit]);
+  } catch (error) {
+    console.error("Database error:", error);
+    throw error;
+  }
+}
+
 export async function getUserById(id) {
   const db = await getDatabase();
   try {
@@ -116,6 +144,10 @@ export async function createUser({ username, password, realname, dob, descriptio
     "INSERT INTO users (username, password, realname, dob, description, avatar_url, create_date) VALUES (?, ?, ?, ?, ?, ?, ?)",
     [username, hashedPassword, realname, dob, description, avatar_url, new Date().toISOString()]
   );
+  const user = await getUserById(result.lastID);
+  if (user) {
+    publishUserEvent("user-created", toPublicUser(user));
+  }
   return { id: result.lastID };
 }
 
@@ -127,6 +159,9 @@ export async function deleteUser(id) {
     
     // Then delete the user
     const result = await db.run("DELETE FROM users WHERE id = ?", id);
+    if (result.changes > 0) {
+      publishUserEvent("user-deleted", { id: parseInt(id) });
+    }
     return result.changes > 0;
   } catch (error) {
     console.error("Error deleting user:", error);
@@ -1,8 +1,9 @@
 import express from "express";
 import multer from "multer";
 import { requiresAuthentication } from "../../middleware/auth-middleware.js";
-import { getAllUsers, updateUser, getUserById, createUser, getUserWithUsername, deleteUser, getFollowersByUserId, getFollowingsByUserId } from "../../data/users-dao.js";
+import { getAllUsers, getUsersPage, updateUser, getUserById, createUser, getUserWithUsername, deleteUser, getFollowersByUserId, getFollowingsByUserId } from "../../data/users-dao.js";
 import { getDatabase } from "../../data/database.js";
+import { getEventsSince, getLastEventId, subscribeToUserEvents } from "../../data/user-events.js";
 import path from 'path';
 import fs from 'fs'; // File system module for managing files
 import sharp from 'sharp'; // Sharp library for image processing
@@ -107,12 +108,28 @@ router.get('/:username/avatar', async (req, res) => {
   }
 });
 
-// Get all users (admin only)
+// Maximum page size accepted by GET /api/users
+const MAX_USERS_PAGE_SIZE = 1000;
+
+// Get all users (admin only). Supplying ?limit=n (and optionally ?after_id=id) returns one page of users
+// ordered by id instead; the next page starts after the id of the last user received.
 router.get("/", requiresAuthentication, async (req, res) => {
   if (req.user.role !== "admin") {
     return res.status(403).json({ message: "Forbidden" });
   }
   try {
+    if (req.query.limit !== undefined) {
+      const limit = parseInt(req.query.limit);
+      const afterId = req.query.after_id === undefined ? 0 : parseInt(req.query.after_id);
+      if (isNaN(limit) || limit < 1 || isNaN(afterId)) {
+        return res
+          .status(400)
+          .json({ message: "limit must be a positive integer and after_id an integer" });
+      }
+      const users = await getUsersPage(Math.min(limit, MAX_USERS_PAGE_SIZE), afterId);
+      return res.json(users);
+    }
+
     const users = await getAllUsers();
     return res.json(users);
   } catch (error) {
@@ -121,6 +138,44 @@ router.get("/", requiresAuthentication, async (req, res) => {
   }
 });
 
+// How often an idle event stream sends a comment line, so clients and proxies can tell it is still open
+const EVENTS_HEARTBEAT_MILLIS = 15000;
+// Delay before a client should reconnect after the event stream drops
+const EVENTS_RETRY_MILLIS = 2000;
+
+// Stream user changes to an admin as server-sent events (user-created, user-updated with the user as data,
+// user-deleted with { id }). A client reconnecting with the Last-Event-ID header (or ?last_event_id=) first gets
+// the events it missed. A "ready" event marks the point where the client is up to date; its data is
+// { "resync": true } when missed events are unknown (first connection, server restart or too long a gap), in
+// which case the client must reload the user list to catch up.
+router.get("/events", requiresAuthentication, (req, res) => {
+  if (req.user.role !== "admin") {
+    return res.status(403).json({ message: "Forbidden" });
+  }
+  // no-transform keeps the compression middleware from buffering the stream
+  res.writeHead(200, {
+    "Content-Type": "text/event-stream",
+    "Cache-Control": "no-cache, no-transform",
+    Connection: "keep-alive"
+  });
+  const send = (event) =>
+    res.write(`id: ${event.id}\nevent: ${event.type}\ndata: ${JSON.stringify(event.data)}\n\n`);
+
+  // Nothing can be published between replaying the missed events and subscribing, as neither step awaits
+  const lastEventId = req.get("Last-Event-ID") ?? req.query.last_event_id;
+  const missed = lastEventId === undefined ? null : getEventsSince(lastEventId);
+  res.write(`retry: ${EVENTS_RETRY_MILLIS}\n\n`);
+  (missed ?? []).forEach(send);
+  send({ id: getLastEventId(), type: "ready", data: { resync: missed === null } });
+  const unsubscribe = subscribeToUserEvents(send);
+
+  const heartbeat = setInterval(() => res.write(": keep-alive\n\n"), EVENTS_HEARTBEAT_MILLIS);
+  req.on("close", () => {
+    clearInterval(heartbeat);
+    unsubscribe();
+  });
+});
+
 // Delete current user's account
 router.delete("/me", requiresAuthentication, async (req, res) => {
   try {
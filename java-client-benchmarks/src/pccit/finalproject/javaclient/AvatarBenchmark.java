@@ -0,0 +1,51 @@
+package pccit.finalproject.javaclient;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Turning a downloaded avatar into a table thumbnail or profile icon: ImageScaler (subsampled decode and
+// stepwise scaling, as AvatarCache does now) against the original ImageIO.read plus getScaledInstance. Both
+// end in an ImageIcon, whose constructor waits for the scaled instance to be produced. GIF avatars go through
+// ImageIO's GIF reader, which decodes LZW into an indexed-color image, unlike the JPEG and PNG paths.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class AvatarBenchmark {
+    @Param({ "jpg", "png", "gif" })
+    public String format;
+
+    @Param({ "400x400", "2000x1500" })
+    public String sourceSize;
+
+    @Param({ "32", "100" })
+    public int targetSize;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] size = sourceSize.split("x");
+        bytes = BenchmarkData.image(Integer.parseInt(size[0]), Integer.parseInt(size[1]), format);
+    }
+
+    @Benchmark
+    public ImageIcon imageScaler() throws IOException {
+        return new ImageIcon(ImageScaler.createThumbnail(bytes, targetSize, targetSize));
+    }
+
+    @Benchmark
+    public ImageIcon getScaledInstance() throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes));
+        return new ImageIcon(image.getScaledInstance(targetSize, targetSize, Image.SCALE_SMOOTH));
+    }
+}
@@ -0,0 +1,88 @@
+package pccit.finalproject.javaclient;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Synthetic users and images shaped like the backend's, generated from a fixed seed so every run measures
+// the same input
+final class BenchmarkData {
+    private static final String[] ROLES = { "user", "user", "user", "admin" };
+    private static final String[] WORDS = { "kia", "ora", "tramping", "Aoraki", "coast", "fiordland", "kauri",
+            "beach", "weekend", "photos", "track", "hut", "lake", "summit", "rain", "ferry" };
+
+    private BenchmarkData() {
+    }
+
+    // Users with IDs 1..count, every field filled in as the backend would, including the password hash.
+    // Strings are distinct objects per user, as they are after decoding a response.
+    static List<User> users(int count, String node) {
+        Random random = new Random(42);
+        List<User> users = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            User user = new User("user" + id, ROLES[random.nextInt(ROLES.length)]);
+            user.setId(id);
+            user.setPassword("$2b$10$" + Long.toString(random.nextLong(), 36) + Long.toString(random.nextLong(), 36)
+                    + Long.toString(random.nextLong(), 36));
+            user.setRealname("Test User " + id);
+            user.setCreate_date(String.format("2024-%02d-%02d", 1 + random.nextInt(12), 1 + random.nextInt(28)));
+            user.setDob(String.format("19%02d-%02d-%02d", 50 + random.nextInt(50), 1 + random.nextInt(12),
+                    1 + random.nextInt(28)));
+            StringBuilder description = new StringBuilder();
+            for (int word = 10 + random.nextInt(30); word > 0; word--) {
+                description.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            user.setDescription(description.toString().trim());
+            user.setAvatar_url("/images/avatars/user" + id + ".png");
+            user.setNode(node);
+            users.add(user);
+        }
+        return users;
+    }
+
+    // The users as the JSON array GET /api/users returns
+    static byte[] usersJson(int count) throws JsonProcessingException {
+        return JSONUtils.toJSONBytes(users(count, null));
+    }
+
+    // Split the users into pages of the given size, as the paged load receives them
+    static List<List<User>> pages(List<User> users, int pageSize) {
+        List<List<User>> pages = new ArrayList<>();
+        for (int start = 0; start < users.size(); start += pageSize) {
+            pages.add(users.subList(start, Math.min(start + pageSize, users.size())));
+        }
+        return pages;
+    }
+
+    // A photo-like image (gradients plus noise, so it does not compress to nothing) encoded as "png", "jpg" or
+    // "gif" (reduced to a 256-color palette by the GIF writer)
+    static byte[] image(int width, int height, String format) throws IOException {
+        Random random = new Random(7);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = x * 255 / width;
+                int g = y * 255 / height;
+                int b = (x + y) % 256;
+                int noise = random.nextInt(32) - 16;
+                image.setRGB(x, y, new Color(clamp(r + noise), clamp(g + noise), clamp(b + noise)).getRGB());
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, format, out)) {
+            throw new IOException("No ImageIO writer for " + format);
+        }
+        return out.toByteArray();
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -0,0 +1,54 @@
+package pccit.finalproject.javaclient;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Decoding a user list with JSONUtils at several payload sizes: from a String (the original path), from the
+// UTF-8 bytes, from bytes in summary mode (the paged admin-table load) and streamed in batches (the full
+// list load)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+    @Param({ "100", "10000", "50000" })
+    public int userCount;
+
+    private byte[] bytes;
+    private String string;
+
+    @Setup
+    public void setUp() throws IOException {
+        bytes = BenchmarkData.usersJson(userCount);
+        string = new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<User> toListFromString() throws IOException {
+        return JSONUtils.toList(string, User.class);
+    }
+
+    @Benchmark
+    public List<User> toListFromBytes() throws IOException {
+        return JSONUtils.toList(bytes, User.class, false);
+    }
+
+    @Benchmark
+    public List<User> toListSummary() throws IOException {
+        return JSONUtils.toList(bytes, User.class, true);
+    }
+
+    @Benchmark
+    public int streamList(Blackhole blackhole) throws IOException {
+        return JSONUtils.streamList(new ByteArrayInputStream(bytes), User.class, ApiClient.USER_BATCH_SIZE,
+                blackhole::consume);
+    }
+}
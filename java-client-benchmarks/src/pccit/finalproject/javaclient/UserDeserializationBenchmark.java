@@ -0,0 +1,35 @@
+package pccit.finalproject.javaclient;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Decoding a single User, as the change feed and the profile view do, from a String and from UTF-8 bytes
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserDeserializationBenchmark {
+    private byte[] bytes;
+    private String string;
+
+    @Setup
+    public void setUp() throws IOException {
+        bytes = JSONUtils.toJSONBytes(BenchmarkData.users(1, null).get(0));
+        string = new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public User fromString() throws IOException {
+        return JSONUtils.toObject(string, User.class);
+    }
+
+    @Benchmark
+    public User fromBytes() throws IOException {
+        return JSONUtils.toObject(bytes, User.class);
+    }
+}
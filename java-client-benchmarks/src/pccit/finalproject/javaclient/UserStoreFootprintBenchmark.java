@@ -0,0 +1,69 @@
+package pccit.finalproject.javaclient;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Heap retained by the admin table's rows: the columnar UserStore against what the client held before, for the
+// same decoded users. The baseline ("list") is the decoded List<User>, password hashes included, plus the
+// table model built from it as the original AdminInterface did: an Object[][] of the displayed columns wrapped
+// in a DefaultTableModel, which keeps the values as a Vector per row.
+// Each invocation builds the rows from scratch and reports the heap still in use after a full GC as the
+// retainedMB counter, next to the time the build took.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Benchmark)
+public class UserStoreFootprintBenchmark {
+    @Param({ "200000" })
+    public int userCount;
+
+    @Param({ "store", "list" })
+    public String layout;
+
+    // Retained heap of the last build, reported per iteration
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public double retainedMB;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedMB = 0;
+        }
+    }
+
+    @Benchmark
+    public Object build(Footprint footprint) {
+        long before = usedHeapAfterGc();
+        Object rows = layout.equals("store") ? toStore() : toList();
+        footprint.retainedMB = (usedHeapAfterGc() - before) / (1024.0 * 1024.0);
+        return rows;
+    }
+
+    // The users are generated here, so nothing but the rows holds on to them afterwards
+    private Object toStore() {
+        UserStore store = new UserStore();
+        for (User user : BenchmarkData.users(userCount, "local")) {
+            store.add(user);
+        }
+        return store;
+    }
+
+    private Object toList() {
+        List<User> users = new ArrayList<>(BenchmarkData.users(userCount, "local"));
+        return List.of(users, UserTableModelBenchmark.rebuild(users));
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,91 @@
+package pccit.finalproject.javaclient;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableModel;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// The row-population path of AdminInterface.loadUserData: decoded pages merged into the UserTableModel
+// between beginRefresh() and endRefresh(), as the EDT does while the pages arrive. Covers the first load into
+// an empty table and a reload in which nothing changed, against the approach the UserTableModel replaced:
+// every load copied the users into a new Object[][], wrapped it in a new DefaultTableModel and set that on the
+// table, which recreates its columns. Every model is attached to a JTable, so its listeners run as in the
+// client. Run with -prof gc to see the allocation per load.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserTableModelBenchmark {
+    @Param({ "10000", "100000" })
+    public int userCount;
+
+    private List<User> users;
+    private List<List<User>> pages;
+    private UserTableModel loaded;
+    private JTable table;
+
+    @Setup
+    public void setUp() {
+        users = BenchmarkData.users(userCount, "local");
+        pages = BenchmarkData.pages(users, ApiClient.USER_BATCH_SIZE);
+        loaded = new UserTableModel();
+        new JTable(loaded);
+        load(loaded, pages);
+        table = new JTable();
+    }
+
+    @Benchmark
+    public UserTableModel firstLoad() {
+        UserTableModel model = new UserTableModel();
+        table.setModel(model);
+        load(model, pages);
+        return model;
+    }
+
+    @Benchmark
+    public UserTableModel unchangedReload() {
+        load(loaded, pages);
+        return loaded;
+    }
+
+    @Benchmark
+    public DefaultTableModel defaultTableModelRebuild() {
+        DefaultTableModel model = rebuild(users);
+        table.setModel(model);
+        applyColumnWidths(table);
+        return model;
+    }
+
+    // The table model as the client built it before UserTableModel
+    static DefaultTableModel rebuild(List<User> users) {
+        Object[][] data = new Object[users.size()][4];
+        for (int i = 0; i < users.size(); i++) {
+            data[i][0] = users.get(i).getId();
+            data[i][1] = users.get(i).getUsername();
+            data[i][2] = users.get(i).getRole();
+            data[i][3] = users.get(i).getAvatar_url();
+        }
+        return new DefaultTableModel(data, new String[] { "ID", "Username", "Role", "url" });
+    }
+
+    // The column widths the client set again after every rebuild, as the new columns had the default widths
+    static void applyColumnWidths(JTable table) {
+        table.getColumnModel().getColumn(0).setMinWidth(30);
+        table.getColumnModel().getColumn(0).setMaxWidth(30);
+        table.getColumnModel().getColumn(2).setMinWidth(50);
+        table.getColumnModel().getColumn(2).setMaxWidth(50);
+    }
+
+    static void load(UserTableModel model, List<List<User>> pages) {
+        model.beginRefresh();
+        for (List<User> page : pages) {
+            model.mergeUsers(page);
+        }
+        model.endRefresh(Set.of());
+    }
+}
@@ -0,0 +1,106 @@
+package pccit.finalproject.javaclient;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.TableModel;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Painting the user table, scrolled to the middle, into an offscreen image the size of the client's table
+// viewport, with the model built as UserTableModel does and as the DefaultTableModel rebuild it replaced did.
+// paint measures one frame; reloadThenPaint a reload followed by the frame that shows it: a rebuilt
+// DefaultTableModel replaces the columns and needs the whole table laid out again, an unchanged reload of
+// the UserTableModel fires no events at all. Offscreen painting always paints the whole viewport, so the
+// frame time is an upper bound for the UserTableModel, whose row events repaint only the rows they cover.
+// Runs without a display. Run with -prof gc to see the allocation per frame.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class UserTablePaintBenchmark {
+    private static final int WIDTH = 700; // The table's scroll pane in AdminInterface
+    private static final int HEIGHT = 300;
+    private static final int ROW_HEIGHT = 36;
+
+    @Param({ "10000", "100000" })
+    public int userCount;
+
+    @Param({ "UserTableModel", "DefaultTableModel" })
+    public String model;
+
+    private List<User> users;
+    private List<List<User>> pages;
+    private JTable table;
+    private JScrollPane scrollPane;
+    private BufferedImage image;
+
+    @Setup
+    public void setUp() {
+        users = BenchmarkData.users(userCount, "local");
+        pages = BenchmarkData.pages(users, ApiClient.USER_BATCH_SIZE);
+        table = new JTable(buildModel());
+        table.setRowHeight(ROW_HEIGHT);
+        scrollPane = new JScrollPane(table);
+        scrollPane.setColumnHeaderView(table.getTableHeader()); // Done by JTable.addNotify when shown
+        scrollPane.setSize(WIDTH, HEIGHT);
+        layOut(scrollPane);
+        scrollPane.getViewport().setViewPosition(new Point(0, userCount / 2 * ROW_HEIGHT));
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        return paintFrame();
+    }
+
+    @Benchmark
+    public BufferedImage reloadThenPaint() {
+        if (table.getModel() instanceof UserTableModel) {
+            UserTableModelBenchmark.load((UserTableModel) table.getModel(), pages);
+        } else {
+            table.setModel(UserTableModelBenchmark.rebuild(users));
+            UserTableModelBenchmark.applyColumnWidths(table);
+            layOut(scrollPane);
+        }
+        return paintFrame();
+    }
+
+    private TableModel buildModel() {
+        if (model.equals("DefaultTableModel")) {
+            return UserTableModelBenchmark.rebuild(users);
+        }
+        UserTableModel userTableModel = new UserTableModel();
+        UserTableModelBenchmark.load(userTableModel, pages);
+        return userTableModel;
+    }
+
+    private BufferedImage paintFrame() {
+        Graphics2D graphics = image.createGraphics();
+        try {
+            scrollPane.paint(graphics);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    // Lay out the component tree as showing it would; without a display nothing else does
+    private static void layOut(Component component) {
+        if (component instanceof Container) {
+            Container container = (Container) component;
+            container.doLayout();
+            for (Component child : container.getComponents()) {
+                layOut(child);
+            }
+        }
+    }
+}
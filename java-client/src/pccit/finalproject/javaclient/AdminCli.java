@@ -0,0 +1,344 @@
+package pccit.finalproject.javaclient;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Console;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Headless entry point for scripted admin work, e.g. nightly maintenance jobs. Uses the same ApiClient as
+// AdminInterface, without creating any window.
+//
+// Usage: AdminCli <mode> --username <name> [--password <password>] [--node <node>] [options]
+// The password may also be given in the NZ_ADMIN_PASSWORD environment variable, or typed at the console.
+// Works on one backend node, by default the first one configured (see ApiClientPool).
+// Modes:
+//   export  --out <file> [--format ndjson|csv]       Write every user to a file, one user per line
+//   delete  --ids <file> [--parallelism N] [--rate R] Delete the users whose IDs are listed in the file
+//   avatars --dir <dir> [--parallelism N]             Download every distinct avatar into the directory
+// Each mode prints a throughput report when it finishes. The exit status is 0 on success, 1 if anything
+// failed and 2 for invalid arguments.
+public class AdminCli {
+    private static final int DEFAULT_PARALLELISM = 8;
+    private static final double DEFAULT_DELETE_RATE = 50; // Deletes started per second; 0 for no limit
+    private static final String CSV_HEADER = "id,username,realname,role,avatar_url,create_date,dob,description";
+
+    private final ApiClient apiClient;
+    private final Map<String, String> options;
+
+    AdminCli(ApiClient apiClient, Map<String, String> options) {
+        this.apiClient = apiClient;
+        this.options = options;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length == 0) {
+            usage("No mode given");
+            return;
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                usage("Invalid option: " + args[i]);
+                return;
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        ApiClientPool pool = ApiClientPool.getInstance();
+        ApiClient apiClient = options.containsKey("node") ? pool.getClient(options.get("node")) : pool.getDefault();
+        if (apiClient == null) {
+            usage("Unknown node: " + options.get("node") + "; configured nodes are " + pool.getClients());
+            return;
+        }
+        AdminCli cli = new AdminCli(apiClient, options);
+        int status;
+        try {
+            cli.login();
+            switch (args[0]) {
+                case "export":
+                    status = cli.export();
+                    break;
+                case "delete":
+                    status = cli.delete();
+                    break;
+                case "avatars":
+                    status = cli.downloadAvatars();
+                    break;
+                default:
+                    usage("Unknown mode: " + args[0]);
+                    return;
+            }
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+            return;
+        } catch (Exception e) {
+            System.err.println("Failed: " + describe(e));
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    private void login() {
+        String username = required("username");
+        String password = options.get("password");
+        if (password == null) {
+            password = System.getenv("NZ_ADMIN_PASSWORD");
+        }
+        if (password == null) {
+            Console console = System.console();
+            if (console == null) {
+                throw new IllegalArgumentException("No password given");
+            }
+            password = new String(console.readPassword("Password for %s: ", username));
+        }
+        apiClient.loginAsync(username, password).join();
+    }
+
+    // Stream every user to the output file. Users are written as they are decoded from the response,
+    // so memory use does not grow with the number of users. The export is one ordered stream, so it has
+    // no parallelism setting.
+    int export() throws IOException {
+        Path out = Paths.get(required("out"));
+        String format = options.getOrDefault("format", "ndjson");
+        if (!format.equals("ndjson") && !format.equals("csv")) {
+            throw new IllegalArgumentException("Unknown format: " + format);
+        }
+
+        long started = System.nanoTime();
+        Path temp = out.toAbsolutePath().resolveSibling(out.getFileName() + ".part");
+        CountingOutputStream counter = new CountingOutputStream(Files.newOutputStream(temp));
+        int count;
+        try (OutputStream stream = new BufferedOutputStream(counter, 64 * 1024)) {
+            if (format.equals("csv")) {
+                stream.write((CSV_HEADER + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            // No deadline on the body: an export takes as long as the node has users, and the response must only
+            // start within the attempt timeout
+            count = apiClient.streamUsersAsync(ApiClient.USER_BATCH_SIZE, null, batch -> {
+                try {
+                    for (User user : batch) {
+                        stream.write(format.equals("csv") ? toCsvLine(user) : toJsonLine(user));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).join();
+        } catch (RuntimeException | IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        // Only replace the output once the export is complete
+        Files.move(temp, out, StandardCopyOption.REPLACE_EXISTING);
+
+        report("export", count, 0, counter.count, started);
+        return 0;
+    }
+
+    // Delete every user listed in the ID file, one ID per line; blank lines and lines starting with # are skipped
+    int delete() throws IOException {
+        List<Integer> userIds = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(required("ids")))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    userIds.add(Integer.parseInt(line));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid user ID in ID file: " + line);
+                }
+            }
+        }
+
+        long started = System.nanoTime();
+        int tenth = Math.max(userIds.size() / 10, 1);
+        BulkDeleter deleter = new BulkDeleter(apiClient, parallelism(),
+                number("rate", DEFAULT_DELETE_RATE), apiClient.getExecutor());
+        BulkDeleter.Result result = deleter.deleteAll(userIds, (completed, total) -> {
+            if (completed % tenth == 0 || completed.equals(total)) {
+                System.out.printf("delete: %d / %d%n", completed, total);
+            }
+        }).join();
+
+        for (Map.Entry<Integer, String> failure : result.getFailed().entrySet()) {
+            System.err.println("delete: ID " + failure.getKey() + ": " + failure.getValue());
+        }
+        report("delete", result.getSucceeded().size(), result.getFailed().size(), 0, started);
+        return result.getFailed().isEmpty() ? 0 : 1;
+    }
+
+    // Download the avatar of every user into the directory, with at most --parallelism downloads in flight.
+    // Avatars shared by several users are downloaded once.
+    int downloadAvatars() throws IOException, InterruptedException {
+        Path dir = Paths.get(required("dir"));
+        Files.createDirectories(dir);
+        Semaphore permits = new Semaphore(parallelism());
+        Set<String> seen = new HashSet<>();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+
+        long started = System.nanoTime();
+        UserPageIterator pages = apiClient.userPages(ApiClient.MAX_PAGE_SIZE);
+        while (pages.hasNext()) {
+            for (User user : pages.next()) {
+                String avatarUrl = user.getAvatar_url();
+                if (avatarUrl == null || avatarUrl.isEmpty() || !seen.add(avatarUrl)) {
+                    continue;
+                }
+                Path target = dir.resolve(fileName(avatarUrl));
+                permits.acquire();
+                pending.add(apiClient.getAvatarImageAsync(avatarUrl, null, null).thenAccept(image -> {
+                    try {
+                        Files.write(target, image.getBytes());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    bytes.addAndGet(image.getBytes().length);
+                }).handle((result, error) -> {
+                    if (error == null) {
+                        succeeded.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                        System.err.println("avatars: " + avatarUrl + ": " + describe(error));
+                    }
+                    permits.release();
+                    return null;
+                }));
+            }
+            // Forget finished downloads, so the list only holds the ones in flight
+            pending.removeIf(CompletableFuture::isDone);
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+
+        report("avatars", succeeded.get(), failed.get(), bytes.get(), started);
+        return failed.get() == 0 ? 0 : 1;
+    }
+
+    private static byte[] toJsonLine(User user) throws IOException {
+        byte[] json = JSONUtils.toExportJSONBytes(user);
+        byte[] line = new byte[json.length + 1];
+        System.arraycopy(json, 0, line, 0, json.length);
+        line[json.length] = '\n';
+        return line;
+    }
+
+    private static byte[] toCsvLine(User user) {
+        StringBuilder line = new StringBuilder();
+        line.append(user.getId());
+        for (String value : new String[] { user.getUsername(), user.getRealname(), user.getRole(),
+                user.getAvatar_url(), user.getCreate_date(), user.getDob(), user.getDescription() }) {
+            line.append(',');
+            if (value != null) {
+                // Quote every value that could otherwise break the line apart, doubling embedded quotes
+                if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0
+                        || value.indexOf('\r') >= 0) {
+                    line.append('"').append(value.replace("\"", "\"\"")).append('"');
+                } else {
+                    line.append(value);
+                }
+            }
+        }
+        return line.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Turn an avatar URL into a file name, keeping only the last path segment
+    private static String fileName(String avatarUrl) {
+        String name = avatarUrl.substring(avatarUrl.lastIndexOf('/') + 1).replaceAll("[^A-Za-z0-9._-]", "_");
+        return name.isEmpty() || name.startsWith(".") ? "avatar_" + Integer.toHexString(avatarUrl.hashCode()) : name;
+    }
+
+    private static void report(String mode, long succeeded, long failed, long bytes, long startedNanos) {
+        double seconds = Math.max((System.nanoTime() - startedNanos) / 1e9, 1e-9);
+        System.out.printf("%s: %d done, %d failed in %.2f s (%.1f/s)", mode, succeeded, failed, seconds,
+                succeeded / seconds);
+        if (bytes > 0) {
+            System.out.printf(", %d bytes (%.2f MB/s)", bytes, bytes / seconds / (1024 * 1024));
+        }
+        System.out.println();
+    }
+
+    private String required(String name) {
+        String value = options.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing --" + name);
+        }
+        return value;
+    }
+
+    private int parallelism() {
+        int parallelism = (int) number("parallelism", DEFAULT_PARALLELISM);
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("--parallelism must be at least 1");
+        }
+        return parallelism;
+    }
+
+    private double number(String name, double defaultValue) {
+        String value = options.get(name);
+        try {
+            return value == null ? defaultValue : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid --" + name + ": " + value);
+        }
+    }
+
+    private static String describe(Throwable error) {
+        while (error.getCause() != null && !(error instanceof ApiException)) {
+            error = error.getCause();
+        }
+        return error.getMessage();
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: AdminCli <mode> --username <name> [--password <password>] [--node <node>]"
+                + " [options]");
+        System.err.println("  export  --out <file> [--format ndjson|csv]");
+        System.err.println("  delete  --ids <file> [--parallelism N] [--rate deletes-per-second]");
+        System.err.println("  avatars --dir <directory> [--parallelism N]");
+        System.exit(2);
+    }
+
+    // Counts the bytes written to the underlying stream
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -1,29 +1,99 @@
 package pccit.finalproject.javaclient;
 
-import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
-import java.net.URL;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import javax.swing.table.DefaultTableModel;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableColumn;
+import javax.swing.table.TableRowSorter;
 
 // Main interface code for Java Swing, including text fields, buttons, JTable, and JPanel
 public class AdminInterface extends JFrame {
+    private static final Log log = Log.get(AdminInterface.class);
+
     // Define components
     private JTextField usernameField;
     private JPasswordField passwordField;
     private JButton loginButton;
     private JButton logoutButton;
     private JTable userTable;
+    private UserTableModel userTableModel;
+    private TableRowSorter<UserTableModel> userTableSorter; // Applies the search filter to the table
+    private JTextField searchField;
     private JButton deleteUserButton;
+    private JButton statsButton; // Opens the live API statistics window
+    private JDialog statsDialog;
+    private JProgressBar deleteProgressBar; // Progress of a bulk delete
+    private JLabel statusLabel; // Describes the operation in progress or the outcome of the last one
+    private JButton cancelButton; // Cancels the operation in progress
+    private UiState uiState = UiState.LOGGED_OUT;
+    private Runnable cancelOperation; // Cancels the operation in progress, or null if it cannot be cancelled
+    private List<ApiClient> loggedIn = List.of(); // Clients of the backend nodes the session is logged in to
     private JLabel userImageLabel; // Label for displaying user avatar
     private JLabel userInfoLabel; // Label for displaying username
+    private JScrollPane scrollPane;
+    private final AvatarCache avatarCache = new AvatarCache(100, 100); // Cache of scaled user avatars
+    private final AvatarCache thumbnailCache = new AvatarCache(THUMBNAIL_SIZE, THUMBNAIL_SIZE); // Table thumbnails
+    private final AvatarLoader avatarLoader = new AvatarLoader(4); // Bounded pool for avatar downloads
+    // Avatar URLs that could not be loaded, and when they may be tried again
+    private final Map<String, FailedThumbnail> failedThumbnails = new HashMap<>();
+    private Timer thumbnailTimer; // Coalesces scroll events before scheduling thumbnail loads
+    private Timer thumbnailRetryTimer; // Schedules thumbnails again once the earliest visible failure may be retried
+    private long thumbnailRetryAt; // When thumbnailRetryTimer fires, in System.currentTimeMillis() terms
+    private Future<?> pendingSearch; // Search running on the index's thread; a newer query cancels it
+    private Timer searchRefreshTimer; // Reruns the active search at most once per interval while rows change
+    private int searchSequence; // Incremented for every search, so stale results can be ignored
+    private final UserSnapshot userSnapshot = new UserSnapshot(); // Last user list, shown at startup
+    // Reads and writes the snapshot off the EDT, one operation at a time
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean serverDataRequested; // Set once users are loaded from the server; snapshot rows stop then
+    private LiveUpdates liveUpdates; // Applies the user changes pushed by the logged-in nodes; null when logged out
+    private Timer snapshotTimer; // Saves the snapshot once a burst of pushed changes has settled
+
+    private static final int THUMBNAIL_SIZE = 32;
+    private static final String THUMBNAIL_KEY = "thumb:";
+    private static final String PROFILE_KEY = "profile:";
+    private static final long THUMBNAIL_RETRY_MILLIS = 5000; // First back-off after a thumbnail fails
+    private static final long MAX_THUMBNAIL_RETRY_MILLIS = 5 * 60 * 1000; // Doubling stops here
+    private static final int BULK_DELETE_CONCURRENCY = 8; // Deletes in flight at once
+    private static final double BULK_DELETE_RATE = 20; // Deletes started per second
+    private static final int SNAPSHOT_DELAY_MILLIS = 2000;
+    private static final int SEARCH_REFRESH_MILLIS = 250;
+
+    // What the window is doing. Every network call runs in the background, and the state decides which
+    // controls can be used meanwhile.
+    private enum UiState { LOGGED_OUT, LOGGING_IN, LOADING, READY, DELETING, LOGGING_OUT }
 
     public AdminInterface() {
         setTitle("Admin Interface");
@@ -51,21 +121,78 @@ public class AdminInterface extends JFrame {
         add(topPanel, BorderLayout.NORTH);
 
         // Middle panel (user data table)
-        String[] columnNames = { "ID", "Username", "Role", "url" };
-        userTable = new JTable(new Object[][] {}, columnNames);
-        userTable.getColumnModel().getColumn(0).setMinWidth(30); // Set minimum width for ID column
-        userTable.getColumnModel().getColumn(0).setMaxWidth(30); // Set maximum width for ID column
-        userTable.getColumnModel().getColumn(2).setMinWidth(50); // Set minimum width for Role column
-        userTable.getColumnModel().getColumn(2).setMaxWidth(50); // Set maximum width for Role column
-        JScrollPane scrollPane = new JScrollPane(userTable);
+        userTableModel = new UserTableModel();
+        userTable = new JTable(userTableModel);
+        userTable.getColumnModel().getColumn(UserTableModel.NODE_COLUMN).setMinWidth(60); // Set width for Node column
+        userTable.getColumnModel().getColumn(UserTableModel.NODE_COLUMN).setMaxWidth(120);
+        userTable.getColumnModel().getColumn(UserTableModel.ID_COLUMN).setMinWidth(30); // Set width for ID column
+        userTable.getColumnModel().getColumn(UserTableModel.ID_COLUMN).setMaxWidth(30);
+        userTable.getColumnModel().getColumn(UserTableModel.ROLE_COLUMN).setMinWidth(50); // Set width for Role column
+        userTable.getColumnModel().getColumn(UserTableModel.ROLE_COLUMN).setMaxWidth(50);
+        TableColumn avatarColumn = userTable.getColumnModel().getColumn(UserTableModel.AVATAR_COLUMN);
+        avatarColumn.setMinWidth(THUMBNAIL_SIZE + 8); // Set width for Avatar column
+        avatarColumn.setMaxWidth(THUMBNAIL_SIZE + 8);
+        avatarColumn.setCellRenderer(new AvatarThumbnailRenderer());
+        userTable.setRowHeight(THUMBNAIL_SIZE + 4);
+        // The sorter is only used for filtering, so keep the rows in server order
+        userTableSorter = new TableRowSorter<>(userTableModel);
+        for (int column = 0; column < userTableModel.getColumnCount(); column++) {
+            userTableSorter.setSortable(column, false);
+        }
+        userTable.setRowSorter(userTableSorter);
+        scrollPane = new JScrollPane(userTable);
         scrollPane.setPreferredSize(new Dimension(700, 300)); // Set fixed width and height for middle panel
-        add(scrollPane, BorderLayout.CENTER);
+
+        // Search box above the table, filtering by username, real name and role
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchField = new JTextField(20);
+        searchField.setToolTipText("Filter by username, real name or role");
+        searchPanel.add(new JLabel("Search:"));
+        searchPanel.add(searchField);
+
+        JPanel middlePanel = new JPanel(new BorderLayout());
+        middlePanel.add(searchPanel, BorderLayout.NORTH);
+        middlePanel.add(scrollPane, BorderLayout.CENTER);
+        add(middlePanel, BorderLayout.CENTER);
+
+        // Only load thumbnails for the rows in view, once scrolling or loading has settled for a moment
+        thumbnailTimer = new Timer(75, e -> scheduleThumbnails());
+        thumbnailTimer.setRepeats(false);
+        thumbnailRetryTimer = new Timer(0, e -> scheduleThumbnails());
+        thumbnailRetryTimer.setRepeats(false);
+        snapshotTimer = new Timer(SNAPSHOT_DELAY_MILLIS, e -> saveSnapshot());
+        snapshotTimer.setRepeats(false);
+        scrollPane.getViewport().addChangeListener(new ViewportListener());
+        userTableModel.addTableModelListener(e -> thumbnailTimer.restart());
+
+        // Search as the user types, and again when rows arrive or change while a query is active. A streamed load
+        // or a burst of pushed changes fires an event per batch, so those start a timer instead, and the one
+        // search it runs covers every change made until then.
+        searchField.getDocument().addDocumentListener(new SearchListener());
+        searchRefreshTimer = new Timer(SEARCH_REFRESH_MILLIS, e -> runSearch());
+        searchRefreshTimer.setRepeats(false);
+        userTableModel.addTableModelListener(e -> {
+            if (!searchField.getText().isBlank() && !searchRefreshTimer.isRunning()) {
+                searchRefreshTimer.start();
+            }
+        });
 
         // Bottom panel (delete user button)
         JPanel bottomPanel = new JPanel();
         deleteUserButton = new JButton("Delete User");
         deleteUserButton.setEnabled(false);
         bottomPanel.add(deleteUserButton);
+        deleteProgressBar = new JProgressBar();
+        deleteProgressBar.setStringPainted(true);
+        deleteProgressBar.setVisible(false);
+        bottomPanel.add(deleteProgressBar);
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        bottomPanel.add(cancelButton);
+        statsButton = new JButton("API Stats");
+        bottomPanel.add(statsButton);
+        statusLabel = new JLabel(" ");
+        bottomPanel.add(statusLabel);
 
         add(bottomPanel, BorderLayout.SOUTH);
 
@@ -93,9 +220,22 @@ public class AdminInterface extends JFrame {
         loginButton.addActionListener(new LoginAction());
         logoutButton.addActionListener(new LogoutAction());
         deleteUserButton.addActionListener(new DeleteUserAction());
+        cancelButton.addActionListener(e -> cancelCurrentOperation());
+        statsButton.addActionListener(e -> showStats());
 
-        // Table selection event listener
+        // Table selection event listener, allowing several users to be selected for deletion
+        userTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         userTable.getSelectionModel().addListSelectionListener(new UserSelectionListener());
+
+        // Show the users saved last time straight away; they are reconciled with the server after login
+        loadSnapshot();
+    }
+
+    // Paint as usual, noting the first frame for the startup report
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        StartupReport.framePainted();
     }
 
     // Action listener for login button
@@ -105,15 +245,41 @@ public class AdminInterface extends JFrame {
             String username = usernameField.getText();
             String password = new String(passwordField.getPassword());
 
-            boolean success = ApiClient.getInstance().login(username, password);
-            if (success) {
-                JOptionPane.showMessageDialog(null, "Login Successful!");
-                logoutButton.setEnabled(true);
-                loginButton.setEnabled(false);
-                loadUserData();
-            } else {
-                JOptionPane.showMessageDialog(null, "Login Failed! Please check your credentials.");
-            }
+            // Log in to every node; nodes that cannot be reached are left out until the next login
+            ApiClientPool pool = ApiClientPool.getInstance();
+            CompletableFuture<List<ApiClient>> login = pool.loginAsync(username, password);
+            setState(UiState.LOGGING_IN, "Logging in...", () -> login.cancel(true));
+            login.whenComplete((clients, error) ->
+                    SwingUtilities.invokeLater(() -> {
+                        if (error == null) {
+                            loggedIn = clients;
+                            // Subscribe to the changes of every node before loading, so none made during the load
+                            // are missed; after that, the table is kept current without reloading
+                            liveUpdates = new LiveUpdates();
+                            setState(UiState.LOGGING_IN, "Subscribing to user changes...", null);
+                            liveUpdates.start(clients).whenComplete((ready, feedError) ->
+                                    SwingUtilities.invokeLater(() -> loadUserData()));
+                            if (clients.size() == pool.getClients().size()) {
+                                JOptionPane.showMessageDialog(null, "Login Successful!");
+                            } else {
+                                List<ApiClient> missing = new ArrayList<>(pool.getClients());
+                                missing.removeAll(clients);
+                                JOptionPane.showMessageDialog(null, "Login Successful, but these nodes could not"
+                                        + " be logged in to and are left out: " + missing);
+                            }
+                        } else if (isCancellation(error)) {
+                            setState(UiState.LOGGED_OUT, "Login cancelled", null);
+                        } else {
+                            setState(UiState.LOGGED_OUT, "Login failed", null);
+                            ApiException apiError = toApiException(error);
+                            if (apiError != null && apiError.isUnauthorized()) {
+                                JOptionPane.showMessageDialog(null, "Login Failed! Please check your credentials.");
+                            } else {
+                                JOptionPane.showMessageDialog(null, "Login Failed! "
+                                        + (apiError != null ? apiError.getMessage() : error.getMessage()));
+                            }
+                        }
+                    }));
         }
     }
 
@@ -121,75 +287,459 @@ public class AdminInterface extends JFrame {
     private class LogoutAction implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            ApiClient.getInstance();
-            JOptionPane.showMessageDialog(null, "Logged out successfully!");
-            logoutButton.setEnabled(false);
-            loginButton.setEnabled(true);
-            userTable.setModel(new DefaultTableModel());
-            userImageLabel.setIcon(null); // Clear user avatar
-            userInfoLabel.setText(""); // Clear user information
+            // Logging out always ends the local session, so there is nothing to cancel
+            setState(UiState.LOGGING_OUT, "Logging out...", null);
+            liveUpdates.close();
+            liveUpdates = null;
+            snapshotTimer.stop();
+            // Failures are logged by the pool; the local sessions are cleared regardless
+            ApiClientPool.getInstance().logoutAsync(loggedIn).whenComplete((result, error) ->
+                    SwingUtilities.invokeLater(() -> {
+                        loggedIn = List.of();
+                        setState(UiState.LOGGED_OUT, "Logged out", null);
+                        JOptionPane.showMessageDialog(null, "Logged out successfully!");
+                        avatarLoader.cancelAll();
+                        failedThumbnails.clear();
+                        thumbnailRetryTimer.stop();
+                        searchField.setText("");
+                        userTableModel.clear();
+                        userImageLabel.setIcon(null); // Clear user avatar
+                        userInfoLabel.setText(""); // Clear user information
+                    }));
         }
     }
 
-    // Action listener for delete user button
+    // Action listener for delete user button, deleting every selected user
     private class DeleteUserAction implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent e) {
-            int selectedRow = userTable.getSelectedRow();
-            if (selectedRow != -1) {
-                // String username = (String) userTable.getValueAt(selectedRow, 0);
-                int userId = (int) userTable.getValueAt(selectedRow, 0); // Get user ID
-                // ApiClient.deleteUserById(username);
-                boolean success = ApiClient.getInstance().deleteUserById(userId); // Call method to delete user
-                // JOptionPane.showMessageDialog(null, "User deleted successfully!");
-//                 loadUserData();
-                if (success) {
-                    JOptionPane.showMessageDialog(null, "User deleted successfully!");
-                    loadUserData(); // Reload user data to update UI
-                } else {
-                    JOptionPane.showMessageDialog(null, "Failed to delete user.");
+            int[] selectedRows = userTable.getSelectedRows();
+            if (selectedRows.length == 0) {
+                return;
+            }
+            // Group the selected users by the node that owns them
+            Map<String, List<Integer>> userIdsByNode = new LinkedHashMap<>();
+            UserStore store = userTableModel.getStore();
+            for (int row : selectedRows) {
+                int modelRow = userTable.convertRowIndexToModel(row);
+                userIdsByNode.computeIfAbsent(store.getNode(modelRow), node -> new ArrayList<>())
+                        .add(store.getId(modelRow)); // Get user ID
+            }
+            int total = selectedRows.length;
+            if (total > 1 && JOptionPane.showConfirmDialog(null, "Delete " + total + " users?",
+                    "Delete Users", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+                return;
+            }
+
+            deleteProgressBar.setMaximum(total);
+            deleteProgressBar.setValue(0);
+            deleteProgressBar.setString("0 / " + total);
+            deleteProgressBar.setVisible(total > 1);
+
+            // Each node's deletes go to that node, all nodes at once, with the concurrency and rate limits
+            // applying per node
+            ApiClientPool pool = ApiClientPool.getInstance();
+            Map<String, BulkDeleter> deleters = new LinkedHashMap<>();
+            for (String node : userIdsByNode.keySet()) {
+                ApiClient client = pool.getClient(node);
+                if (client != null) {
+                    deleters.put(node, new BulkDeleter(client, BULK_DELETE_CONCURRENCY, BULK_DELETE_RATE,
+                            client.getExecutor()));
+                }
+            }
+            setState(UiState.DELETING, "Deleting " + total + (total == 1 ? " user..." : " users..."), () -> {
+                for (BulkDeleter deleter : deleters.values()) {
+                    deleter.cancel();
+                }
+            });
+            AtomicInteger completed = new AtomicInteger();
+            Map<String, CompletableFuture<BulkDeleter.Result>> pending = new LinkedHashMap<>();
+            for (Map.Entry<String, BulkDeleter> deleter : deleters.entrySet()) {
+                pending.put(deleter.getKey(), deleter.getValue().deleteAll(userIdsByNode.get(deleter.getKey()),
+                        (done, nodeTotal) -> {
+                            int overall = completed.incrementAndGet();
+                            SwingUtilities.invokeLater(() -> {
+                                deleteProgressBar.setValue(overall);
+                                deleteProgressBar.setString(overall + " / " + total);
+                            });
+                        }));
+            }
+            CompletableFuture.allOf(pending.values().toArray(new CompletableFuture<?>[0]))
+                    .whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+                        deleteProgressBar.setVisible(false);
+                        if (error != null) {
+                            log.error("Delete failed", error);
+                            setState(UiState.READY, "Delete failed", null);
+                            liveUpdates.operationFinished();
+                            JOptionPane.showMessageDialog(null, "Failed to delete user.");
+                            return;
+                        }
+                        // Apply the removals locally instead of reloading every user
+                        Map<String, BulkDeleter.Result> results = new LinkedHashMap<>();
+                        int deleted = 0;
+                        for (Map.Entry<String, CompletableFuture<BulkDeleter.Result>> node : pending.entrySet()) {
+                            BulkDeleter.Result result = node.getValue().join();
+                            results.put(node.getKey(), result);
+                            userTableModel.removeUsers(node.getKey(), result.getSucceeded());
+                            deleted += result.getSucceeded().size();
+                        }
+                        saveSnapshot();
+                        setState(UiState.READY, "Deleted " + deleted + " of " + total, null);
+                        liveUpdates.operationFinished();
+                        showDeleteSummary(userIdsByNode, results);
+                    }));
+        }
+    }
+
+    // Show one message summarising the outcome of a delete, given the users asked for and the result of each
+    // node's deletes. Users of a node that is no longer configured have no result and count as failed.
+    private void showDeleteSummary(Map<String, List<Integer>> requested, Map<String, BulkDeleter.Result> results) {
+        int total = 0;
+        int deleted = 0;
+        int notSent = 0;
+        List<String> failures = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> node : requested.entrySet()) {
+            total += node.getValue().size();
+            BulkDeleter.Result result = results.get(node.getKey());
+            String prefix = requested.size() > 1 || results.size() < requested.size() ? node.getKey() + " " : "";
+            if (result == null) {
+                for (int id : node.getValue()) {
+                    failures.add(prefix + "ID " + id + ": unknown node");
+                }
+                continue;
+            }
+            deleted += result.getSucceeded().size();
+            notSent += result.getRequested() - result.getStarted();
+            for (Map.Entry<Integer, String> failure : result.getFailed().entrySet()) {
+                failures.add(prefix + "ID " + failure.getKey() + ": " + failure.getValue());
+            }
+        }
+        if (total == 1) {
+            JOptionPane.showMessageDialog(null, deleted == 1
+                    ? "User deleted successfully!" : "Failed to delete user.");
+            return;
+        }
+        StringBuilder message = new StringBuilder()
+                .append("Deleted ").append(deleted)
+                .append(" of ").append(total).append(" users.");
+        if (notSent > 0) {
+            message.append("\nCancelled before ").append(notSent).append(" were sent.");
+        }
+        if (!failures.isEmpty()) {
+            message.append("\n").append(failures.size()).append(" failed:");
+            int shown = 0;
+            for (String failure : failures) {
+                if (shown++ == 10) {
+                    message.append("\n...");
+                    break;
                 }
+                message.append("\n").append(failure);
             }
         }
+        JOptionPane.showMessageDialog(null, message.toString());
     }
 
     // Load user data into the table
     private void loadUserData() {
-        // Use SwingWorker to avoid blocking the main thread
-        SwingWorker<List<User>, Void> worker = new SwingWorker<>() {
-            @Override
-            protected List<User> doInBackground() throws Exception {
-                // Fetch user data
-                return ApiClient.getInstance().getUsers();
+        // Reconcile the existing rows (possibly from the snapshot) against the servers by node and user ID as
+        // pages arrive, so unchanged rows, the selection and the scroll position are kept
+        serverDataRequested = true;
+        userTableModel.beginRefresh();
+        long started = System.nanoTime();
+        boolean[] firstPage = { true };
+        int[] received = { 0 };
+
+        // Walk the user list of every node at once, page by page in the background, handing each page to the
+        // EDT as soon as it arrives; each node's next page is already being fetched while the table adds the
+        // current one. Cancelling aborts the requests in flight and keeps the rows received so far.
+        ApiClientPool pool = ApiClientPool.getInstance();
+        List<ApiClient> nodes = loggedIn;
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CompletableFuture<Map<String, Throwable>> loading = pool.forEachUserPage(nodes, ApiClient.USER_BATCH_SIZE,
+                page -> SwingUtilities.invokeLater(() -> {
+                    if (cancelled.get()) {
+                        return;
+                    }
+                    userTableModel.mergeUsers(page);
+                    received[0] += page.size();
+                    statusLabel.setText("Loading users... " + received[0]);
+                    if (firstPage[0]) {
+                        firstPage[0] = false;
+                        log.info("Server: first page of users shown %d ms after login",
+                                (System.nanoTime() - started) / 1_000_000);
+                    }
+                }));
+        setState(UiState.LOADING, "Loading users...", () -> {
+            cancelled.set(true);
+            loading.cancel(true);
+        });
+        loading.whenComplete((failed, error) -> SwingUtilities.invokeLater(() -> {
+            String problem = finishLoading(cancelled.get(), failed, error, nodes, received[0], started);
+            if (liveUpdates != null) {
+                liveUpdates.operationFinished(); // Apply the changes pushed during the load
+            }
+            if (problem != null) {
+                JOptionPane.showMessageDialog(null, problem);
             }
+        }));
+    }
 
-            @Override
-            protected void done() {
-                try {
-                    List<User> users = get();
-                    String[] columnNames = { "ID", "Username", "Role", "url" };
-                    Object[][] data = new Object[users.size()][4];
-                    for (int i = 0; i < users.size(); i++) {
-                        data[i][0] = users.get(i).getId();
-                        data[i][1] = users.get(i).getUsername();
-                        data[i][2] = users.get(i).getRole();
-                        data[i][3] = users.get(i).getAvatar_url();
+    // Reconcile the table with the outcome of a user load, returning the problem to report or null
+    private String finishLoading(boolean cancelled, Map<String, Throwable> failed, Throwable error,
+                                 List<ApiClient> nodes, int received, long started) {
+        if (cancelled) {
+            userTableModel.cancelRefresh(); // Rows not received yet may still exist, so remove nothing
+            setState(UiState.READY, "Loading cancelled after " + received + " users", null);
+            return null;
+        }
+        if (error != null || failed.size() == nodes.size()) {
+            log.error("Loading users failed", error != null ? error : failed.values().iterator().next());
+            userTableModel.cancelRefresh();
+            setState(UiState.READY, "Failed to load users", null);
+            return "Failed to load user data.";
+        }
+        log.info("Server: %d users from %d nodes loaded in %d ms", received, nodes.size(),
+                (System.nanoTime() - started) / 1_000_000);
+        // Remove rows that no longer exist on the server, except on nodes that were not fully loaded
+        Set<String> incomplete = new HashSet<>(failed.keySet());
+        for (ApiClient client : ApiClientPool.getInstance().getClients()) {
+            if (!nodes.contains(client)) {
+                incomplete.add(client.getNode());
+            }
+        }
+        userTableModel.endRefresh(incomplete);
+        setTitle("Admin Interface");
+        saveSnapshot();
+        if (failed.isEmpty()) {
+            setState(UiState.READY, userTableModel.getRowCount() + " users", null);
+            return null;
+        }
+        setState(UiState.READY, userTableModel.getRowCount() + " users, not all loaded from " + failed.keySet(),
+                null);
+        StringBuilder message = new StringBuilder("Failed to load user data from:");
+        for (Map.Entry<String, Throwable> failure : failed.entrySet()) {
+            message.append("\n").append(failure.getKey()).append(": ").append(failure.getValue().getMessage());
+        }
+        return message.toString();
+    }
+
+    // Fill the table from the local snapshot in the background, reporting how long the first rows took to show.
+    // Batches arriving after the server load has started are dropped, since the server is authoritative.
+    private void loadSnapshot() {
+        long started = System.nanoTime();
+        snapshotExecutor.execute(() -> {
+            boolean[] firstBatch = { true };
+            try {
+                int count = userSnapshot.read(ApiClient.USER_BATCH_SIZE, batch -> SwingUtilities.invokeLater(() -> {
+                    if (serverDataRequested) {
+                        return;
+                    }
+                    userTableModel.mergeUsers(batch);
+                    if (firstBatch[0]) {
+                        firstBatch[0] = false;
+                        log.info("Snapshot: first rows shown %d ms after load started (JVM uptime %d ms)",
+                                (System.nanoTime() - started) / 1_000_000,
+                                ManagementFactory.getRuntimeMXBean().getUptime());
                     }
+                }));
+                if (count >= 0) {
+                    log.info("Snapshot: %d users read in %d ms", count, (System.nanoTime() - started) / 1_000_000);
+                    Date savedAt = new Date(userSnapshot.getSavedAt());
+                    SwingUtilities.invokeLater(() -> {
+                        if (!serverDataRequested) {
+                            setTitle("Admin Interface (saved " + savedAt + ", log in to refresh)");
+                        }
+                    });
+                }
+            } catch (IOException e) {
+                // A damaged or outdated snapshot is simply replaced after the next successful load
+                log.warn("Ignoring user snapshot: %s", e.getMessage());
+                try {
+                    userSnapshot.delete();
+                } catch (IOException deleteError) {
+                    log.warn("Could not delete user snapshot", deleteError);
+                }
+            }
+        });
+    }
+
+    // Save the current rows as the snapshot for the next startup. The store is copied on the EDT
+    // and written on the snapshot thread.
+    private void saveSnapshot() {
+        UserStore rows = userTableModel.getStore().copy();
+        snapshotExecutor.execute(() -> {
+            try {
+                userSnapshot.write(rows);
+            } catch (IOException e) {
+                log.warn("Could not save user snapshot", e);
+            }
+        });
+    }
+
+    // Keeps the table current from the change feeds of the logged-in nodes (see UserChangeFeed), instead of
+    // reloading every user after each change. Changes pushed while users are being loaded are queued and
+    // applied once the load ends, as a page fetched before a change could otherwise undo it. Only a feed that
+    // missed changes it cannot replay causes a full reload.
+    // The feeds' threads hand changes to the EDT through one queue, drained once per EDT turn, so a burst of
+    // deletes removes its rows in one pass instead of shifting every row below each deleted one in turn.
+    private class LiveUpdates implements UserChangeFeed.Listener {
+        private final List<UserChangeFeed> feeds = new ArrayList<>();
+        private final Queue<PushedChange> pushed = new ConcurrentLinkedQueue<>(); // Not yet taken by the EDT
+        private final AtomicBoolean drainPosted = new AtomicBoolean(); // A drain() is waiting to run on the EDT
+        private final List<PushedChange> queued = new ArrayList<>(); // Changes waiting for the load to end; EDT only
+        private boolean reloadPending; // A feed asked for a reload while another operation was running
+
+        // Subscribe to the changes of each node. Completes once every feed is ready; see UserChangeFeed.ready()
+        CompletableFuture<Void> start(List<ApiClient> clients) {
+            List<CompletableFuture<Void>> ready = new ArrayList<>();
+            for (ApiClient client : clients) {
+                UserChangeFeed feed = client.subscribeUserChanges(this);
+                feeds.add(feed);
+                ready.add(feed.ready());
+            }
+            return CompletableFuture.allOf(ready.toArray(new CompletableFuture<?>[0]));
+        }
 
-                    // Update table model
-                    userTable.setModel(new DefaultTableModel(data, columnNames));
-                    userTable.getColumnModel().getColumn(0).setMinWidth(30); // Set minimum width for ID column
-                    userTable.getColumnModel().getColumn(0).setMaxWidth(30); // Set maximum width for ID column
-                    userTable.getColumnModel().getColumn(2).setMinWidth(50); // Set minimum width for Role column
-                    userTable.getColumnModel().getColumn(2).setMaxWidth(50); // Set maximum width for Role column
-                    updateButtonStates(); // Update button states
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    JOptionPane.showMessageDialog(null, "Failed to load user data.");
+        void close() {
+            for (UserChangeFeed feed : feeds) {
+                feed.close();
+            }
+            queued.clear();
+        }
+
+        // Apply the changes queued during an operation and run a reload asked for meanwhile. Called on the EDT
+        // once the operation has finished.
+        void operationFinished() {
+            if (this != liveUpdates) {
+                return;
+            }
+            if (reloadPending) {
+                reloadPending = false;
+                queued.clear(); // The reload receives the current state
+                loadUserData();
+                return;
+            }
+            if (!queued.isEmpty()) {
+                log.info("Applying %d user changes received while loading", queued.size());
+                applyInOrder(queued);
+                queued.clear();
+                snapshotTimer.restart();
+            }
+        }
+
+        @Override
+        public void onUserChanged(User user) {
+            push(new PushedChange(user, user.getNode(), user.getId()));
+        }
+
+        @Override
+        public void onUserDeleted(String node, int id) {
+            push(new PushedChange(null, node, id));
+        }
+
+        @Override
+        public void onResync(String node) {
+            SwingUtilities.invokeLater(() -> {
+                if (this != liveUpdates) {
+                    return;
+                }
+                log.info("Reloading users after %s missed changes", node);
+                if (uiState == UiState.READY) {
+                    loadUserData(); // Reloads every node; the others are reconciled without visible changes
+                } else {
+                    reloadPending = true;
+                }
+            });
+        }
+
+        @Override
+        public void onClosed(String node, Throwable error) {
+            SwingUtilities.invokeLater(() -> {
+                if (this == liveUpdates && uiState == UiState.READY) {
+                    statusLabel.setText("Live updates from " + node + " stopped: " + error.getMessage());
+                }
+            });
+        }
+
+        // Queue a change for the EDT, posting a drain unless one is already waiting
+        private void push(PushedChange change) {
+            pushed.add(change);
+            if (drainPosted.compareAndSet(false, true)) {
+                SwingUtilities.invokeLater(this::drain);
+            }
+        }
+
+        // Take every change pushed so far and apply it now, or once the load in progress has ended. Called on the
+        // EDT; changes pushed after the flag is reset post another drain.
+        private void drain() {
+            drainPosted.set(false);
+            List<PushedChange> changes = new ArrayList<>();
+            for (PushedChange change = pushed.poll(); change != null; change = pushed.poll()) {
+                changes.add(change);
+            }
+            if (this != liveUpdates || changes.isEmpty()) {
+                return; // Logged out since the changes arrived
+            }
+            if (uiState == UiState.LOGGING_IN || uiState == UiState.LOADING) {
+                queued.addAll(changes);
+            } else {
+                applyInOrder(changes);
+                snapshotTimer.restart();
+            }
+        }
+
+        // Apply changes in the order they were pushed, merging each run of updates in one call and removing each
+        // run of deletes in another
+        private void applyInOrder(List<PushedChange> changes) {
+            List<User> updated = new ArrayList<>();
+            Map<String, List<Integer>> deleted = new HashMap<>();
+            for (PushedChange change : changes) {
+                if (change.user != null) {
+                    if (!deleted.isEmpty()) {
+                        userTableModel.removeUsers(deleted);
+                        deleted = new HashMap<>();
+                    }
+                    updated.add(change.user);
+                } else {
+                    if (!updated.isEmpty()) {
+                        userTableModel.mergeUsers(updated);
+                        updated = new ArrayList<>();
+                    }
+                    deleted.computeIfAbsent(change.node, node -> new ArrayList<>()).add(change.id);
                 }
             }
-        };
-        worker.execute();
+            userTableModel.removeUsers(deleted);
+            userTableModel.mergeUsers(updated);
+        }
+    }
+
+    // A user that a change feed reported as changed, with its new values, or as deleted, with a null user
+    private static class PushedChange {
+        private final User user;
+        private final String node;
+        private final int id;
+
+        PushedChange(User user, String node, int id) {
+            this.user = user;
+            this.node = node;
+            this.id = id;
+        }
+    }
+
+    // Whether a future failed because it was cancelled
+    private static boolean isCancellation(Throwable error) {
+        while (error != null && !(error instanceof CancellationException)) {
+            error = error.getCause();
+        }
+        return error != null;
+    }
+
+    // Get the ApiException behind a failed future, or null if the failure had another cause
+    private static ApiException toApiException(Throwable error) {
+        while (error != null && !(error instanceof ApiException)) {
+            error = error.getCause();
+        }
+        return (ApiException) error;
     }
 
     // Listener for table row selection
@@ -197,71 +747,261 @@ public class AdminInterface extends JFrame {
         @Override
         public void valueChanged(ListSelectionEvent event) {
             if (!event.getValueIsAdjusting() && userTable.getSelectedRow() != -1) {
-                String username = (String) userTable.getValueAt(userTable.getSelectedRow(), 1);
-                loadUserProfile(username);
-                deleteUserButton.setEnabled(true);
+                int row = userTable.convertRowIndexToModel(userTable.getSelectedRow());
+                loadUserProfile(userTableModel.getStore().getUsername(row), avatarUrlAt(row));
             }
+            updateButtonStates();
         }
     }
 
     // Load user profile information including avatar
-    private void loadUserProfile(String username) {
-        // Use SwingWorker to avoid blocking the main thread
-        SwingWorker<ImageIcon, Void> worker = new SwingWorker<>() {
-            @Override
-            protected ImageIcon doInBackground() throws Exception {
-                // Fetch user avatar from server
-                String avatarUrl = (String) userTable.getValueAt(userTable.getSelectedRow(), 3); // Get avatar URL from
-                // table
-                if (avatarUrl != null && !avatarUrl.isEmpty()) {
-                    try {
-                        // Construct URL object
-                        URL url = new URL("http://localhost:3000/" + avatarUrl); // Ensure URL matches image path on
-                        // server
-                        System.out.println(url);
-                        // Read image from URL
-                        Image image = ImageIO.read(url);
-                        if (image != null) {
-                            // Scale image to fit JLabel
-                            Image scaledImage = image.getScaledInstance(100, 100, Image.SCALE_SMOOTH);
-                            return new ImageIcon(scaledImage);
-                        }
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+    private void loadUserProfile(String username, String avatarUrl) {
+        if (avatarUrl == null || avatarUrl.isEmpty()) {
+            avatarLoader.retainOnly(PROFILE_KEY, Set.of());
+            userImageLabel.setIcon(null);
+            userInfoLabel.setText("Failed to load profile.");
+            return;
+        }
+
+        // Cancel the load for any previously selected user and fetch this one ahead of everything else
+        String key = PROFILE_KEY + avatarUrl;
+        avatarLoader.retainOnly(PROFILE_KEY, Set.of(key));
+        avatarLoader.submit(key, AvatarLoader.PRIORITY_SELECTED, () -> avatarCache.getAvatar(avatarUrl), avatar -> {
+            if (avatar != null) {
+                userImageLabel.setIcon(avatar);
+                userInfoLabel.setText("Username: " + username);
+            } else {
+                userImageLabel.setIcon(null);
+                userInfoLabel.setText("Failed to load profile.");
+            }
+        });
+    }
+
+    // Queue thumbnail loads for the visible rows and a page of rows either side of them,
+    // and cancel any queued loads for rows that have scrolled away
+    private void scheduleThumbnails() {
+        int rowCount = userTable.getRowCount();
+        Set<String> wanted = new HashSet<>();
+        if (rowCount > 0) {
+            Rectangle view = scrollPane.getViewport().getViewRect();
+            int first = userTable.rowAtPoint(new Point(0, view.y));
+            int last = userTable.rowAtPoint(new Point(0, view.y + view.height - 1));
+            first = first < 0 ? 0 : first;
+            last = last < 0 ? rowCount - 1 : last;
+            int prefetch = last - first + 1;
+
+            for (int row = first; row <= last; row++) {
+                requestThumbnail(row, AvatarLoader.PRIORITY_VISIBLE, wanted);
+            }
+            for (int i = 1; i <= prefetch; i++) {
+                if (last + i < rowCount) {
+                    requestThumbnail(last + i, AvatarLoader.PRIORITY_PREFETCH, wanted);
+                }
+                if (first - i >= 0) {
+                    requestThumbnail(first - i, AvatarLoader.PRIORITY_PREFETCH, wanted);
                 }
-                return null;
             }
+        }
+        avatarLoader.retainOnly(THUMBNAIL_KEY, wanted);
+    }
 
-            @Override
-            protected void done() {
-                try {
-                    ImageIcon avatar = get();
-                    if (avatar != null) {
-                        userImageLabel.setIcon(avatar);
-                        userInfoLabel.setText("Username: " + username);
-                    } else {
-                        userImageLabel.setIcon(null);
-                        userInfoLabel.setText("Failed to load profile.");
+    private void requestThumbnail(int row, int priority, Set<String> wanted) {
+        String avatarUrl = avatarUrlAt(userTable.convertRowIndexToModel(row));
+        if (avatarUrl == null || thumbnailCache.isFresh(avatarUrl)) {
+            return;
+        }
+        FailedThumbnail failed = failedThumbnails.get(avatarUrl);
+        if (failed != null && failed.permanent) {
+            return;
+        }
+        if (failed != null && System.currentTimeMillis() < failed.retryAt) {
+            scheduleThumbnailRetry(failed.retryAt);
+            return;
+        }
+        String key = THUMBNAIL_KEY + avatarUrl;
+        wanted.add(key);
+        avatarLoader.submit(key, priority, () -> thumbnailCache.getAvatar(avatarUrl), icon -> {
+            if (icon != null) {
+                failedThumbnails.remove(avatarUrl);
+            } else {
+                // A 4xx will not change by asking again; anything else, such as a timeout, an open breaker or a
+                // 5xx, is tried again after a back-off that doubles with every failure in a row
+                FailedThumbnail previous = failedThumbnails.get(avatarUrl);
+                long backoff = previous == null ? THUMBNAIL_RETRY_MILLIS
+                        : Math.min(2 * previous.backoff, MAX_THUMBNAIL_RETRY_MILLIS);
+                failedThumbnails.put(avatarUrl, new FailedThumbnail(thumbnailCache.isRejected(avatarUrl),
+                        System.currentTimeMillis() + backoff, backoff));
+            }
+            userTable.repaint(scrollPane.getViewport().getViewRect());
+        });
+    }
+
+    // Make sure thumbnails are scheduled again by the given time. Only rows in view arm the timer, and every
+    // scheduling pass arms it again for the next failure due, so thumbnails scrolled away are not retried.
+    private void scheduleThumbnailRetry(long retryAt) {
+        if (thumbnailRetryTimer.isRunning() && thumbnailRetryAt <= retryAt) {
+            return;
+        }
+        thumbnailRetryAt = retryAt;
+        thumbnailRetryTimer.setInitialDelay((int) Math.max(0, retryAt - System.currentTimeMillis()));
+        thumbnailRetryTimer.restart();
+    }
+
+    // Get the avatar URL of a model row, made absolute on the row's node since every node serves its own images,
+    // or null if the user has no avatar
+    private String avatarUrlAt(int modelRow) {
+        UserStore store = userTableModel.getStore();
+        String avatarUrl = store.getAvatarUrl(modelRow);
+        if (avatarUrl == null || avatarUrl.isEmpty()) {
+            return null;
+        }
+        ApiClient client = ApiClientPool.getInstance().getClient(store.getNode(modelRow));
+        return (client != null ? client : ApiClientPool.getInstance().getDefault()).resolveUrl(avatarUrl);
+    }
+
+    // Look up the current search text in the index on its thread, cancelling any search still running,
+    // and apply the matching users as the table's row filter once the lookup is done
+    private void runSearch() {
+        String query = searchField.getText();
+        int sequence = ++searchSequence;
+        searchRefreshTimer.stop(); // This search covers the changes the timer was waiting for
+        if (pendingSearch != null) {
+            pendingSearch.cancel(true);
+        }
+        pendingSearch = userTableModel.getSearchIndex().search(query, matches ->
+                SwingUtilities.invokeLater(() -> {
+                    if (sequence == searchSequence) {
+                        applySearchFilter(matches);
                     }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    userImageLabel.setIcon(null);
-                    userInfoLabel.setText("Failed to load profile.");
-                }
+                }));
+    }
+
+    // Show only the rows whose row key is in the set, or every row if it is null
+    private void applySearchFilter(BitSet matchingKeys) {
+        if (matchingKeys == null) {
+            userTableSorter.setRowFilter(null);
+            return;
+        }
+        UserStore store = userTableModel.getStore();
+        userTableSorter.setRowFilter(new RowFilter<UserTableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends UserTableModel, ? extends Integer> entry) {
+                return matchingKeys.get(store.getKey(entry.getIdentifier()));
             }
-        };
-        worker.execute();
+        });
     }
 
-    // Update button states based on user selection
+    // Runs a search whenever the search text changes
+    private class SearchListener implements DocumentListener {
+        @Override
+        public void insertUpdate(DocumentEvent e) {
+            runSearch();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            runSearch();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            runSearch();
+        }
+    }
+
+    // Schedules thumbnail loads whenever the visible part of the table changes
+    private class ViewportListener implements ChangeListener {
+        @Override
+        public void stateChanged(ChangeEvent e) {
+            thumbnailTimer.restart();
+        }
+    }
+
+    // Renders the avatar column as a thumbnail, if it has already been loaded
+    private class AvatarThumbnailRenderer extends DefaultTableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, null, isSelected, hasFocus, row, column);
+            String avatarUrl = avatarUrlAt(table.convertRowIndexToModel(row));
+            setHorizontalAlignment(SwingConstants.CENTER);
+            setIcon(avatarUrl == null ? null : thumbnailCache.peek(avatarUrl));
+            setToolTipText(avatarUrl);
+            return this;
+        }
+    }
+
+    // A thumbnail that could not be loaded: either for good, or until retryAt, after waiting backoff milliseconds
+    private static class FailedThumbnail {
+        private final boolean permanent;
+        private final long retryAt;
+        private final long backoff;
+
+        FailedThumbnail(boolean permanent, long retryAt, long backoff) {
+            this.permanent = permanent;
+            this.retryAt = retryAt;
+            this.backoff = backoff;
+        }
+    }
+
+    // Show the live request statistics of every endpoint in a separate, non-modal window
+    private void showStats() {
+        if (statsDialog == null) {
+            statsDialog = new JDialog(this, "API Stats", false);
+            statsDialog.add(new ApiStatsPanel(ApiClientPool.getInstance().getClients()));
+            statsDialog.pack();
+            statsDialog.setLocationRelativeTo(this);
+        }
+        statsDialog.setVisible(true);
+    }
+
+    // Switch to a new state, showing the status text. The cancel action, if not null, is run when the
+    // Cancel button is pressed.
+    private void setState(UiState state, String status, Runnable cancel) {
+        uiState = state;
+        cancelOperation = cancel;
+        statusLabel.setText(status);
+        updateButtonStates();
+    }
+
+    // Cancel the operation in progress. Its completion handler moves to the next state.
+    private void cancelCurrentOperation() {
+        Runnable cancel = cancelOperation;
+        if (cancel == null) {
+            return;
+        }
+        cancelOperation = null;
+        statusLabel.setText("Cancelling...");
+        updateButtonStates();
+        cancel.run();
+    }
+
+    // Update button states based on the current state and user selection
     private void updateButtonStates() {
-        deleteUserButton.setEnabled(userTable.getSelectedRow() != -1);
+        boolean loggedOut = uiState == UiState.LOGGED_OUT;
+        usernameField.setEnabled(loggedOut);
+        passwordField.setEnabled(loggedOut);
+        loginButton.setEnabled(loggedOut);
+        logoutButton.setEnabled(uiState == UiState.READY);
+        deleteUserButton.setEnabled(uiState == UiState.READY && userTable.getSelectedRow() != -1);
+        cancelButton.setEnabled(cancelOperation != null);
     }
 
     public static void main(String[] args) {
+        StartupReport.mainEntered();
+        // Set up the HTTP clients, image decoding and JSON in the background while the window is built. Started
+        // first, as installing the watchdog initialises the AWT toolkit on this thread.
+        CompletableFuture<Void> prewarm = StartupPrewarm.start().thenRun(StartupReport::prewarmDone);
+        EdtWatchdog.install(); // Report event dispatch stalls while the application runs
+        if (StartupReport.EXIT_WHEN_READY && GraphicsEnvironment.isHeadless()) {
+            // A timing or class data sharing training run without a display: only the prewarm can run
+            StartupReport.noWindow();
+            prewarm.join();
+            return;
+        }
         SwingUtilities.invokeLater(() -> {
             AdminInterface adminInterface = new AdminInterface();
+            StartupReport.windowBuilt();
             adminInterface.setVisible(true);
         });
     }
@@ -1,138 +1,673 @@
 package pccit.finalproject.javaclient;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+
 import java.io.*;
 import java.net.*;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import javax.swing.*;
 
+// Client of one backend node. The nodes to administer are configured in ApiClientPool, which creates one
+// ApiClient per node; each has its own session cookie, circuit breaker and metrics. All methods are thread-safe.
 public class ApiClient {
-    private static ApiClient instance;
-    private static final String BASE_URL = "http://localhost:3000/api";
+    private static final Log log = Log.get(ApiClient.class);
+    // Number of users decoded before a batch is handed to the caller
+    public static final int USER_BATCH_SIZE = 500;
+    // Largest page the backend returns from GET /api/users?limit=
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // How each endpoint is sent; see EndpointPolicy. Streamed responses only need to start within the attempt
+    // timeout, so the full user list gets a long deadline rather than a long attempt timeout. Bodies are read
+    // under the same deadline, counted from when the call started (see readBeforeDeadline).
+    // Logging in again only issues a fresh token, so it is treated as idempotent; a repeated user delete
+    // would report 404 for a user that was in fact deleted, so it is not.
+    private static final Map<String, EndpointPolicy> DEFAULT_POLICIES = Map.of(
+            "POST /auth", new EndpointPolicy(Duration.ofSeconds(5), Duration.ofSeconds(15), 3, true, 0),
+            "DELETE /auth", new EndpointPolicy(Duration.ofSeconds(5), Duration.ofSeconds(10), 3, true, 0),
+            "GET /users", new EndpointPolicy(Duration.ofSeconds(10), Duration.ofSeconds(120), 3, true, 0),
+            "GET /users?limit", new EndpointPolicy(Duration.ofSeconds(5), Duration.ofSeconds(30), 4, true, 0.95),
+            "DELETE /users/{id}", new EndpointPolicy(Duration.ofSeconds(5), Duration.ofSeconds(15), 3, false, 0),
+            "GET /users/{username}/avatar-url",
+            new EndpointPolicy(Duration.ofSeconds(5), Duration.ofSeconds(15), 3, true, 0.95),
+            "GET avatar image", new EndpointPolicy(Duration.ofSeconds(5), Duration.ofSeconds(15), 3, true, 0.95),
+            "GET /users/events", new EndpointPolicy(Duration.ofSeconds(10), Duration.ofSeconds(15), 1, true, 0));
+    private static final EndpointPolicy FALLBACK_POLICY =
+            new EndpointPolicy(Duration.ofSeconds(10), Duration.ofSeconds(30), 1, false, 0);
 
-    // Singleton pattern to ensure only one instance of ApiClient exists
+    // Get the client of the first configured node, for code that works with a single backend
     public static ApiClient getInstance() {
-        if (instance == null) {
-            instance = new ApiClient();
+        return ApiClientPool.getInstance().getDefault();
+    }
+
+    // Replace the shared clients with ones that run on the given executor and, if http2 is true,
+    // negotiate HTTP/2 (falling back to HTTP/1.1 when the server does not support it).
+    // Should be called before the first getInstance(), as the new clients start without a session.
+    public static void configure(Executor executor, boolean http2) {
+        ApiClientPool.configure(executor, http2);
+    }
+
+    // Use virtual threads when the runtime supports them (Java 21+), otherwise a cached pool of daemon threads
+    public static Executor defaultExecutor() {
+        try {
+            return (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(r, "api-client");
+                thread.setDaemon(true);
+                return thread;
+            });
         }
-        return instance;
     }
 
+    private final String node;
+    private final String serverUrl;
+    private final String baseUrl;
     private final CookieManager cookieManager;
-    private final HttpClient client;
+    private final boolean http2;
+    private volatile HttpClient client; // Built on first use, see httpClient()
+    private final Executor executor;
+    private final Map<String, TransferStats> transferStats = new ConcurrentHashMap<>();
+    private final ApiMetrics metrics;
+    private final Map<String, EndpointPolicy> policies = new ConcurrentHashMap<>(DEFAULT_POLICIES);
+    private final CircuitBreaker circuitBreaker;
 
-    // Private constructor to initialize HttpClient and CookieManager
-    private ApiClient() {
+    // Create the client of a node, e.g. ("auckland", "http://akl.example.com:3000"). Every client gets its own
+    // HttpClient and CookieManager: cookies are not scoped by port, so nodes on one host would otherwise
+    // overwrite each other's session.
+    ApiClient(String node, String serverUrl, Executor executor, boolean http2) {
+        this.node = node;
+        this.serverUrl = serverUrl;
+        this.baseUrl = serverUrl + "/api";
         this.cookieManager = new CookieManager();
+        this.http2 = http2;
+        this.executor = executor;
+        this.metrics = new ApiMetrics(node);
+        // Opens when 60% of the last 40 requests (and at least 20) have failed, and tries again after 5 seconds.
+        // A backend that fails now and then, which retries deal with, stays well below that.
+        this.circuitBreaker = new CircuitBreaker(node, 40, 20, 0.6, 5000);
+    }
 
-        this.client = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_1_1)
-                .followRedirects(HttpClient.Redirect.NEVER)
-                .connectTimeout(Duration.ofSeconds(10))
-                .cookieHandler(this.cookieManager)
-                .build();
+    // Get the HttpClient, building it on first use. The first one built loads the whole HTTP stack and the
+    // default SSL context, which takes long enough that creating the pool (e.g. to resolve an avatar URL) should
+    // not pay for it; StartupPrewarm builds it in the background instead.
+    HttpClient httpClient() {
+        HttpClient built = client;
+        if (built == null) {
+            synchronized (this) {
+                built = client;
+                if (built == null) {
+                    built = HttpClient.newBuilder()
+                            .version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                            .followRedirects(HttpClient.Redirect.NEVER)
+                            .connectTimeout(Duration.ofSeconds(10))
+                            .cookieHandler(cookieManager)
+                            .executor(executor)
+                            .build();
+                    client = built;
+                }
+            }
+        }
+        return built;
+    }
+
+    @Override
+    public String toString() {
+        return node + " (" + serverUrl + ")";
+    }
+
+    // Get the name of the node this client talks to
+    public String getNode() {
+        return node;
+    }
+
+    // Get the root URL of the node, e.g. "http://localhost:3000"
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    // Get the executor the client runs its requests and callbacks on
+    public Executor getExecutor() {
+        return executor;
     }
 
     // Login method that sends username and password to the backend
     public boolean login(String username, String password) {
-        try {
-            String json = JSONUtils.toJSON(new LoginRequest(username, password));
-            System.out.println(json);
-            HttpRequest request = HttpRequest.newBuilder()
-//                    .uri(new URI(BASE_URL + "/auth"))
-                    .uri(new URI(BASE_URL + "/auth"))
-                    .setHeader("Accept", "application/json")
-                    .setHeader("Content-Type", "application/json")
-                    .method("POST", HttpRequest.BodyPublishers.ofString(json))
-                    .build();
-            System.out.println(request);
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            System.out.println(response);
-            return response.statusCode() == 200;
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        return false;
+        return await(loginAsync(username, password).thenApply(v -> true), false);
     }
 
     // Logout method
     public void logout() {
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-//                    .uri(new URI(BASE_URL + "/auth"))
-                    .uri(new URI(BASE_URL + "/auth")) 
-                    .DELETE()
-                    .build();
-
-            client.send(request, HttpResponse.BodyHandlers.ofString());
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        await(logoutAsync(), null);
     }
 
     // Method to retrieve all user information from the backend
     public List<User> getUsers() {
+        return await(getUsersAsync(), null);
+    }
+
+    // Stream all users from the backend, decoding the response body as it arrives and handing
+    // users to the consumer in batches. Returns the number of users decoded, or -1 on failure.
+    public int streamUsers(int batchSize, Consumer<List<User>> batchConsumer) {
+        return await(streamUsersAsync(batchSize, batchConsumer), -1);
+    }
+
+    // Method to delete a user by their ID
+    public boolean deleteUserById(int userId) {
+        return await(deleteUserByIdAsync(userId).thenApply(v -> true), false);
+    }
+
+    // Method to get a specific user's avatar
+    public byte[] getUserAvatar(String username) {
+        return await(getUserAvatarAsync(username), new byte[0]);
+    }
+
+    // Fetch an avatar image by its avatar_url, sending the cached validators (either may be null) as a
+    // conditional request. Returns the response (200 with the image bytes or 304 if unchanged), or null on failure.
+    public AvatarImage getAvatarImage(String avatarUrl, String etag, String lastModified) {
+        return await(getAvatarImageAsync(avatarUrl, etag, lastModified), null);
+    }
+
+    // Log in asynchronously. Fails with an ApiException whose isUnauthorized() is true for bad credentials.
+    public CompletableFuture<Void> loginAsync(String username, String password) {
+        String json;
         try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(new URI(BASE_URL + "/users"))
-                    .GET()
-                    .build();
+            json = JSONUtils.toJSON(new LoginRequest(username, password));
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(new ApiException(ApiException.Kind.DECODE, e.getMessage(), -1, e));
+        }
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/auth"))
+                .setHeader("Accept", "application/json")
+                .setHeader("Content-Type", "application/json")
+                .method("POST", HttpRequest.BodyPublishers.ofString(json))
+                .build();
+        log.debug("Sending %s", request);
+        return send("POST /auth", request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    log.debug("Received %s", response);
+                    expectStatus(response, 200);
+                    return null;
+                });
+    }
+
+    // Log out asynchronously
+    public CompletableFuture<Void> logoutAsync() {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/auth"))
+                .DELETE()
+                .build();
+        return send("DELETE /auth", request, HttpResponse.BodyHandlers.discarding()).thenApply(response -> null);
+    }
 
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    // Retrieve all users asynchronously
+    public CompletableFuture<List<User>> getUsersAsync() {
+        List<User> users = new ArrayList<>();
+        return streamUsersAsync(USER_BATCH_SIZE, users::addAll).thenApply(count -> users);
+    }
 
-            if (response.statusCode() == 200) {
-                return JSONUtils.toList(response.body(), User.class);
+    // Stream all users asynchronously. Batches are delivered on a background thread as they are decoded,
+    // and the future completes with the total number of users once the whole body has been read.
+    // The whole call, body included, must finish within the deadline of GET /users.
+    public CompletableFuture<Integer> streamUsersAsync(int batchSize, Consumer<List<User>> batchConsumer) {
+        return streamUsersAsync(batchSize, getPolicy("GET /users").getDeadline(), batchConsumer);
+    }
+
+    // Stream all users as above, with the body read under the given deadline instead, counted from when the
+    // call starts. A null deadline lets the body take as long as it needs once the response has started, for
+    // batch jobs such as the command-line export whose length grows with the number of users.
+    public CompletableFuture<Integer> streamUsersAsync(int batchSize, Duration bodyDeadline,
+                                                       Consumer<List<User>> batchConsumer) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/users"))
+                .setHeader("Accept", "application/json")
+                .setHeader("Accept-Encoding", DecompressingBodyHandler.ACCEPT_ENCODING)
+                .GET()
+                .build();
+        long startedAt = System.nanoTime();
+        return send("GET /users", request, decompressing("GET /users"))
+                .thenApplyAsync(response -> readBeforeDeadline("GET /users", response, startedAt, bodyDeadline,
+                        body -> {
+                            expectStatus(response, 200);
+                            return JSONUtils.streamList(body, User.class, batchSize, batch -> {
+                                setNode(batch);
+                                batchConsumer.accept(batch);
+                            });
+                        }), executor);
+    }
+
+    // Fetch one page of users ordered by ID, starting after the given ID (0 for the first page).
+    // Pages are decoded for the admin table, so password, description and dob are left null.
+    public CompletableFuture<List<User>> getUsersPageAsync(int afterId, int limit) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/users?limit=" + limit + "&after_id=" + afterId))
+                .setHeader("Accept", "application/json")
+                .setHeader("Accept-Encoding", DecompressingBodyHandler.ACCEPT_ENCODING)
+                .GET()
+                .build();
+        long startedAt = System.nanoTime();
+        Duration deadline = getPolicy("GET /users?limit").getDeadline();
+        return send("GET /users?limit", request, decompressing("GET /users?limit"))
+                .thenApplyAsync(response -> readBeforeDeadline("GET /users?limit", response, startedAt, deadline,
+                        body -> {
+                            expectStatus(response, 200);
+                            List<User> page = new ArrayList<>(limit);
+                            JSONUtils.streamList(body, User.class, true, limit, page::addAll);
+                            setNode(page);
+                            return page;
+                        }), executor);
+    }
+
+    // Iterate over pages of users, prefetching the next page while the current one is consumed.
+    // The page size is capped at MAX_PAGE_SIZE.
+    public UserPageIterator userPages(int pageSize) {
+        return new UserPageIterator(this, Math.min(pageSize, MAX_PAGE_SIZE));
+    }
+
+    // Iterate lazily over every user, fetching pages of the given size as they are needed
+    public Iterator<User> userIterator(int pageSize) {
+        UserPageIterator pages = userPages(pageSize);
+        return new Iterator<>() {
+            private Iterator<User> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && pages.hasNext()) {
+                    current = pages.next().iterator();
+                }
+                return current.hasNext();
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+
+            @Override
+            public User next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    // Spliterator over every user, for use with StreamSupport.stream(...)
+    public Spliterator<User> userSpliterator(int pageSize) {
+        return Spliterators.spliteratorUnknownSize(userIterator(pageSize),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+    }
+
+    // Delete a user by their ID asynchronously
+    public CompletableFuture<Void> deleteUserByIdAsync(int userId) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/users/" + userId))
+                .DELETE()
+                .build();
+        log.debug("Sending %s", request);
+        return send("DELETE /users/{id}", request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    expectStatus(response, 200);
+                    log.debug("Deleted user %s", userId);
+                    return null;
+                });
+    }
+
+    // Subscribe to the changes made to users on this node from now on; see UserChangeFeed.
+    // The feed runs until it is closed or the session ends.
+    public UserChangeFeed subscribeUserChanges(UserChangeFeed.Listener listener) {
+        UserChangeFeed feed = new UserChangeFeed(this, listener);
+        feed.start();
+        return feed;
+    }
+
+    // Open the user change event stream, resuming after the given event ID if there is one.
+    // Only the response headers are awaited under the endpoint's policy; the body is read by UserChangeFeed.
+    CompletableFuture<HttpResponse<InputStream>> openUserEvents(String lastEventId) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/users/events"))
+                .setHeader("Accept", "text/event-stream")
+                .GET();
+        if (lastEventId != null) {
+            builder.setHeader("Last-Event-ID", lastEventId);
         }
-        return null;
+        return send("GET /users/events", builder.build(), HttpResponse.BodyHandlers.ofInputStream())
+                .thenApply(response -> {
+                    expectStatus(response, 200);
+                    return response;
+                });
     }
 
+    // Get a specific user's avatar asynchronously
+    public CompletableFuture<byte[]> getUserAvatarAsync(String username) {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(baseUrl + "/users/" + username + "/avatar-url")) // Ensure the path matches with the backend
+                .setHeader("Accept", "application/octet-stream")
+                .setHeader("Accept-Encoding", DecompressingBodyHandler.ACCEPT_ENCODING)
+                .GET()
+                .build();
+        String endpoint = "GET /users/{username}/avatar-url";
+        long startedAt = System.nanoTime();
+        Duration deadline = getPolicy(endpoint).getDeadline();
+        return send(endpoint, request, decompressing(endpoint))
+                .thenApplyAsync(response -> {
+                    expectStatus(response, 200);
+                    return readBeforeDeadline(endpoint, response, startedAt, deadline, InputStream::readAllBytes);
+                }, executor);
+    }
 
-    // Method to delete a user by their ID
-    public boolean deleteUserById(int userId) {
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(new URI(BASE_URL + "/users/" + userId))
-                    .DELETE()
-                    .build();
-            System.out.println(request);
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-            if (response.statusCode() == 200) {
-                System.out.println("User deleted successfully");
-                return true;
+    // Fetch an avatar image asynchronously, completing with the result of a 200 or 304 response.
+    // The avatar_url may be relative to this node or an absolute URL from resolveUrl().
+    public CompletableFuture<AvatarImage> getAvatarImageAsync(String avatarUrl, String etag, String lastModified) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(resolveUrl(avatarUrl).replace(" ", "%20")))
+                .setHeader("Accept-Encoding", DecompressingBodyHandler.ACCEPT_ENCODING)
+                .GET();
+        if (etag != null) {
+            builder.setHeader("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            builder.setHeader("If-Modified-Since", lastModified);
+        }
+        long startedAt = System.nanoTime();
+        Duration deadline = getPolicy("GET avatar image").getDeadline();
+        return send("GET avatar image", builder.build(), decompressing("GET avatar image"))
+                .thenApplyAsync(response -> {
+                    expectStatus(response, 200, 304);
+                    byte[] bytes = readBeforeDeadline("GET avatar image", response, startedAt, deadline,
+                            InputStream::readAllBytes);
+                    return new AvatarImage(response.statusCode(), bytes,
+                            response.headers().firstValue("ETag").orElse(null),
+                            response.headers().firstValue("Last-Modified").orElse(null));
+                }, executor);
+    }
+
+    // Turn a path the node returned, such as an avatar_url, into an absolute URL on this node.
+    // Absolute URLs are returned unchanged.
+    public String resolveUrl(String path) {
+        if (path.startsWith("http://") || path.startsWith("https://")) {
+            return path;
+        }
+        return serverUrl + (path.startsWith("/") ? path : "/" + path);
+    }
+
+    // Get the bytes received by each endpoint that supports compressed responses, keyed by endpoint
+    public Map<String, TransferStats> getTransferStats() {
+        return Collections.unmodifiableMap(new TreeMap<>(transferStats));
+    }
+
+    // Get the request metrics of every endpoint called so far
+    public ApiMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Get how requests to an endpoint are sent, e.g. "GET /users?limit"
+    public EndpointPolicy getPolicy(String endpoint) {
+        return policies.getOrDefault(endpoint, FALLBACK_POLICY);
+    }
+
+    // Change how requests to an endpoint are sent, e.g. to tighten the timeouts of a batch job
+    public void setPolicy(String endpoint, EndpointPolicy policy) {
+        policies.put(endpoint, policy);
+    }
+
+    // Get the circuit breaker guarding the node
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    // Mark decoded users as coming from this node
+    private void setNode(List<User> users) {
+        for (User user : users) {
+            user.setNode(node);
+        }
+    }
+
+    // Body handler that decodes gzip/deflate bodies as they are read and records the transfer for the endpoint
+    private DecompressingBodyHandler decompressing(String endpoint) {
+        return new DecompressingBodyHandler(transferStats.computeIfAbsent(endpoint, key -> new TransferStats()));
+    }
+
+    // Reads a response body, throwing IOException on failure
+    private interface BodyReader<R> {
+        R read(InputStream body) throws IOException;
+    }
+
+    // Read a body on the executor, aborting it if the deadline, counted from startedAt (a System.nanoTime()
+    // value), passes first; a null deadline reads for as long as the body takes. ResilientCall's deadline ends
+    // once the response has started, so a server that stalls part way through a body would otherwise keep the
+    // reader waiting for good.
+    private <R> R readBeforeDeadline(String endpoint, HttpResponse<InputStream> response, long startedAt,
+                                     Duration deadline, BodyReader<R> reader) {
+        AtomicBoolean expired = new AtomicBoolean();
+        ScheduledFuture<?> expiry = null;
+        if (deadline != null) {
+            long remainingNanos = startedAt + deadline.toNanos() - System.nanoTime();
+            expiry = ResilientCall.scheduleDeadline(() -> {
+                expired.set(true);
+                try {
+                    DecompressingBodyHandler.abort(response.body());
+                } catch (IOException e) {
+                    log.debug("Could not abort %s body: %s", endpoint, e);
+                }
+            }, Math.max(TimeUnit.NANOSECONDS.toMillis(remainingNanos), 0));
+        }
+        try (InputStream body = response.body()) {
+            return reader.read(body);
+        } catch (IOException e) {
+            if (expired.get()) {
+                metrics.endpoint(endpoint).recordDeadlineExceeded();
+                throw new CompletionException(new ApiException(ApiException.Kind.TIMEOUT, endpoint
+                        + " body not read within " + deadline.toMillis() + " ms of the call starting", -1, e));
+            }
+            throw new CompletionException(toApiException(e));
+        } finally {
+            if (expiry != null) {
+                expiry.cancel(false);
+            }
+        }
+    }
+
+    // Send a request asynchronously under the endpoint's policy, retrying, hedging and timing it out as
+    // configured (see ResilientCall). The endpoint names the call without its parameters.
+    // Cancelling the returned future, or any future derived from it, aborts the HTTP exchanges in flight.
+    private <T> CompletableFuture<HttpResponse<T>> send(String endpoint, HttpRequest request,
+                                                       HttpResponse.BodyHandler<T> handler) {
+        EndpointPolicy policy = getPolicy(endpoint);
+        EndpointMetrics endpointMetrics = metrics.endpoint(endpoint);
+        HttpRequest timed = HttpRequest.newBuilder(request, (name, value) -> true)
+                .timeout(policy.getAttemptTimeout())
+                .build();
+        return new ResilientCall<T>(endpoint, policy, endpointMetrics, circuitBreaker, timed,
+                attempt -> sendOnce(endpointMetrics, attempt, handler), executor).start();
+    }
+
+    // Send a single request, turning transport failures into ApiExceptions and recording the request in
+    // the metrics of the endpoint. Cancelling the returned future aborts the HTTP exchange.
+    private <T> CompletableFuture<HttpResponse<T>> sendOnce(EndpointMetrics endpointMetrics, HttpRequest request,
+                                                           HttpResponse.BodyHandler<T> handler) {
+        long requestBytes = request.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L);
+        long started = System.nanoTime();
+        // Set once the response has started or the request was cancelled, whichever came first. Only a request
+        // still waiting for its response is aborted: aborting the exchange closes its connection, which the client
+        // may already have handed to another request once a short body was in, well before the exchange future
+        // completes. A response that started is discarded below instead.
+        AtomicBoolean settled = new AtomicBoolean();
+        HttpResponse.BodyHandler<T> countingHandler = responseInfo -> {
+            settled.set(true);
+            return new CountingBodySubscriber<>(handler.apply(responseInfo), endpointMetrics);
+        };
+        CompletableFuture<HttpResponse<T>> exchange = httpClient().sendAsync(request, countingHandler);
+        CompletableFuture<HttpResponse<T>> sent = new CancellableFuture<>(() -> {
+            if (settled.compareAndSet(false, true)) {
+                exchange.cancel(true);
+            }
+        });
+        // Recorded on the exchange itself, so cancelled requests are counted too
+        exchange.whenComplete((response, error) -> {
+            long elapsed = System.nanoTime() - started;
+            if (sent.isCancelled() || error instanceof CancellationException) {
+                endpointMetrics.recordCancelled(requestBytes);
+                if (response != null) {
+                    discardBody(response);
+                }
+                sent.completeExceptionally(error != null ? error : new CancellationException());
+            } else if (error != null) {
+                endpointMetrics.recordFailure(requestBytes, elapsed);
+                sent.completeExceptionally(toApiException(error));
             } else {
-                System.out.println("Failed to delete user, response code: " + response.statusCode());
-                return false;
+                endpointMetrics.recordResponse(response.statusCode(), requestBytes, elapsed);
+                sent.complete(response);
+            }
+        });
+        return sent;
+    }
+
+    // Fail with an ApiException unless the response has one of the expected status codes
+    private static void expectStatus(HttpResponse<?> response, int... expected) {
+        for (int status : expected) {
+            if (response.statusCode() == status) {
+                return;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return false;
         }
+        discardBody(response);
+        throw new CompletionException(ApiException.status(response.request().method() + " "
+                + response.uri().getPath(), response.statusCode()));
     }
 
-    // Method to get a specific user's avatar
-    public byte[] getUserAvatar(String username) {
+    // Release the connection of a response whose streamed body will not be read
+    static void discardBody(HttpResponse<?> response) {
+        if (response.body() instanceof Closeable) {
+            try {
+                ((Closeable) response.body()).close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static ApiException toApiException(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof ApiException) {
+            return (ApiException) error;
+        }
+        if (error instanceof HttpTimeoutException) {
+            return new ApiException(ApiException.Kind.TIMEOUT, error.getMessage(), -1, error);
+        }
+        if (error instanceof JsonProcessingException) {
+            return new ApiException(ApiException.Kind.DECODE, error.getMessage(), -1, error);
+        }
+        // Some transport errors, e.g. a refused connection, have no message of their own
+        String message = error.getMessage() != null ? error.getMessage() : error.toString();
+        return new ApiException(ApiException.Kind.NETWORK, message, -1, error);
+    }
+
+    // Wait for a future on behalf of the blocking methods, logging the error and returning the fallback on failure
+    private static <T> T await(CompletableFuture<T> future, T fallback) {
         try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(new URI(BASE_URL + "/users/" + username + "/avatar-url")) // Ensure the path matches with the backend
-                    .setHeader("Accept", "application/octet-stream")
-                    .GET()
-                    .build();
-
-            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
-            if (response.statusCode() == 200) {
-                return response.body();
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            log.warn("Request failed", e.getCause() != null ? e.getCause() : e);
+            return fallback;
+        }
+    }
+
+    // Passes the body through unchanged, adding the size of every received buffer to the endpoint's bytes in
+    private static class CountingBodySubscriber<T> implements HttpResponse.BodySubscriber<T> {
+        private final HttpResponse.BodySubscriber<T> delegate;
+        private final EndpointMetrics metrics;
+
+        CountingBodySubscriber(HttpResponse.BodySubscriber<T> delegate, EndpointMetrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return delegate.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            delegate.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            long bytes = 0;
+            for (ByteBuffer buffer : buffers) {
+                bytes += buffer.remaining();
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            metrics.recordBytesIn(bytes);
+            delegate.onNext(buffers);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            delegate.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            delegate.onComplete();
+        }
+    }
+
+    // Result of an avatar image request: either 200 with the image bytes, or 304 (not modified) with no bytes
+    public static class AvatarImage {
+        private final int statusCode;
+        private final byte[] bytes;
+        private final String etag;
+        private final String lastModified;
+
+        public AvatarImage(int statusCode, byte[] bytes, String etag, String lastModified) {
+            this.statusCode = statusCode;
+            this.bytes = bytes;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public boolean isNotModified() {
+            return statusCode == 304;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
         }
-        return new byte[0];
     }
 
     // Inner class representing the login request payload
@@ -0,0 +1,246 @@
+package pccit.finalproject.javaclient;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// The backend nodes the admin client works with, e.g. one per region, with one ApiClient each.
+// Nodes are configured as a comma-separated list of name=url entries, read from the nzdiscovery.nodes system
+// property or else the NZ_DISCOVERY_NODES environment variable:
+//   -Dnzdiscovery.nodes=auckland=http://akl.example.com:3000,wellington=http://wlg.example.com:3000
+// A URL without a name is named after its host and port. With nothing configured, a single node named
+// "local" at http://localhost:3000 is used.
+// The operations here fan out to every node in parallel, so they take as long as the slowest node rather
+// than the sum of all of them. The pool is immutable and safe to use from any thread.
+public class ApiClientPool {
+    private static final Log log = Log.get(ApiClientPool.class);
+    private static final String DEFAULT_NODES = "local=http://localhost:3000";
+    private static ApiClientPool instance;
+
+    private final List<ApiClient> clients;
+    private final Map<String, ApiClient> clientsByNode;
+    private final Executor executor;
+
+    // Get the shared pool, creating it from the configured nodes on first use
+    public static synchronized ApiClientPool getInstance() {
+        if (instance == null) {
+            instance = new ApiClientPool(configuredNodes(), ApiClient.defaultExecutor(),
+                    Boolean.getBoolean("nzdiscovery.http2"));
+        }
+        return instance;
+    }
+
+    // Replace the shared pool with one whose clients run on the given executor; see ApiClient.configure
+    public static synchronized void configure(Executor executor, boolean http2) {
+        instance = new ApiClientPool(configuredNodes(), executor, http2);
+    }
+
+    // Create a pool for the nodes, given as node name -> server URL in the order they should be listed
+    public ApiClientPool(Map<String, String> nodes, Executor executor, boolean http2) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("No backend nodes configured");
+        }
+        List<ApiClient> created = new ArrayList<>();
+        Map<String, ApiClient> byNode = new LinkedHashMap<>();
+        for (Map.Entry<String, String> node : nodes.entrySet()) {
+            ApiClient client = new ApiClient(node.getKey(), node.getValue(), executor, http2);
+            created.add(client);
+            byNode.put(node.getKey(), client);
+        }
+        this.clients = Collections.unmodifiableList(created);
+        this.clientsByNode = Collections.unmodifiableMap(byNode);
+        this.executor = executor;
+        log.info("Backend nodes: %s", clients);
+    }
+
+    // Get the client of every node, in configuration order
+    public List<ApiClient> getClients() {
+        return clients;
+    }
+
+    // Get the client of the named node, or null if there is no such node
+    public ApiClient getClient(String node) {
+        return clientsByNode.get(node);
+    }
+
+    // Get the client of the first configured node
+    public ApiClient getDefault() {
+        return clients.get(0);
+    }
+
+    // Get the client of the node serving an absolute URL, e.g. one from ApiClient.resolveUrl(), or the first
+    // node's client if the URL is relative or belongs to no node
+    public ApiClient getClientForUrl(String url) {
+        for (ApiClient client : clients) {
+            if (url.startsWith(client.getServerUrl() + "/")) {
+                return client;
+            }
+        }
+        return getDefault();
+    }
+
+    // Get the executor shared by the clients
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    // Log in to every node at once. Completes with the clients that accepted the login, so the others can be
+    // left out while they are unreachable, and fails only if no node accepted it, with the error of the first
+    // node (an unauthorized error if any node rejected the credentials). Cancelling cancels every login.
+    public CompletableFuture<List<ApiClient>> loginAsync(String username, String password) {
+        Map<ApiClient, CompletableFuture<Void>> logins = new LinkedHashMap<>();
+        for (ApiClient client : clients) {
+            logins.put(client, client.loginAsync(username, password));
+        }
+        CompletableFuture<List<ApiClient>> result = new CancellableFuture<>(() -> {
+            for (CompletableFuture<Void> login : logins.values()) {
+                login.cancel(true);
+            }
+        });
+        CompletableFuture.allOf(logins.values().toArray(new CompletableFuture<?>[0])).whenComplete((ignored, error) -> {
+            List<ApiClient> loggedIn = new ArrayList<>();
+            Throwable firstError = null;
+            for (Map.Entry<ApiClient, CompletableFuture<Void>> login : logins.entrySet()) {
+                Throwable loginError = errorOf(login.getValue());
+                if (loginError == null) {
+                    loggedIn.add(login.getKey());
+                    continue;
+                }
+                log.warn("Login to %s failed: %s", login.getKey(), loginError.getMessage());
+                if (firstError == null || !isUnauthorized(firstError) && isUnauthorized(loginError)) {
+                    firstError = loginError;
+                }
+            }
+            if (loggedIn.isEmpty()) {
+                result.completeExceptionally(firstError);
+            } else {
+                result.complete(loggedIn);
+            }
+        });
+        return result;
+    }
+
+    // Log out of each of the clients at once, completing when every logout has finished.
+    // Failures are logged, as the local sessions end regardless.
+    public CompletableFuture<Void> logoutAsync(List<ApiClient> loggedIn) {
+        List<CompletableFuture<Void>> logouts = new ArrayList<>();
+        for (ApiClient client : loggedIn) {
+            logouts.add(client.logoutAsync().exceptionally(error -> {
+                log.warn("Logout from %s failed: %s", client, error.getMessage());
+                return null;
+            }));
+        }
+        return CompletableFuture.allOf(logouts.toArray(new CompletableFuture<?>[0]));
+    }
+
+    // Walk the user pages of each client, all nodes in parallel, handing every page to the consumer as it
+    // arrives. Users are tagged with their node (User.getNode()). The consumer is called from background
+    // threads, possibly for several nodes at once.
+    // Completes once every node has been walked, with the error of each node whose walk failed, keyed by node
+    // name; the other nodes' users are complete. Cancelling the returned future stops every walk.
+    public CompletableFuture<Map<String, Throwable>> forEachUserPage(List<ApiClient> nodes, int pageSize,
+                                                                    Consumer<List<User>> pageConsumer) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        List<UserPageIterator> walks = new ArrayList<>();
+        for (ApiClient client : nodes) {
+            walks.add(client.userPages(pageSize)); // Starts fetching the first page straight away
+        }
+        CompletableFuture<Map<String, Throwable>> result = new CancellableFuture<>(() -> {
+            cancelled.set(true);
+            for (UserPageIterator pages : walks) {
+                pages.close();
+            }
+        });
+        Map<String, Throwable> failed = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        for (int i = 0; i < walks.size(); i++) {
+            UserPageIterator pages = walks.get(i);
+            ApiClient client = nodes.get(i);
+            pending.add(CompletableFuture.runAsync(() -> {
+                while (!cancelled.get() && pages.hasNext()) {
+                    pageConsumer.accept(pages.next());
+                }
+            }, executor).whenComplete((ignored, error) -> {
+                if (error != null && !cancelled.get()) {
+                    log.warn("Loading users from %s failed: %s", client, unwrap(error).getMessage());
+                    failed.put(client.getNode(), unwrap(error));
+                }
+            }));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]))
+                .whenComplete((ignored, error) -> result.complete(new TreeMap<>(failed)));
+        return result;
+    }
+
+    // Parse the configured node list into node name -> server URL
+    static Map<String, String> configuredNodes() {
+        String spec = System.getProperty("nzdiscovery.nodes");
+        if (spec == null || spec.isBlank()) {
+            spec = System.getenv("NZ_DISCOVERY_NODES");
+        }
+        return parseNodes(spec == null || spec.isBlank() ? DEFAULT_NODES : spec);
+    }
+
+    // Parse "name=url,name=url,..." into node name -> server URL, keeping the order given
+    static Map<String, String> parseNodes(String spec) {
+        Map<String, String> nodes = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int equals = entry.indexOf('=');
+            String url = (equals >= 0 ? entry.substring(equals + 1) : entry).trim();
+            while (url.endsWith("/")) {
+                url = url.substring(0, url.length() - 1);
+            }
+            URI uri;
+            try {
+                uri = URI.create(url);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid backend node URL: " + url, e);
+            }
+            if (uri.getHost() == null || !"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme())) {
+                throw new IllegalArgumentException("Invalid backend node URL: " + url);
+            }
+            String name = equals >= 0 ? entry.substring(0, equals).trim()
+                    : uri.getHost() + (uri.getPort() >= 0 ? ":" + uri.getPort() : "");
+            if (name.isEmpty() || nodes.put(name, url) != null) {
+                throw new IllegalArgumentException("Missing or duplicate backend node name in: " + spec);
+            }
+        }
+        return nodes;
+    }
+
+    // Get the error a completed future failed with, or null if it succeeded
+    private static Throwable errorOf(CompletableFuture<?> future) {
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException | CancellationException e) {
+            return unwrap(e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    private static boolean isUnauthorized(Throwable error) {
+        return error instanceof ApiException && ((ApiException) error).isUnauthorized();
+    }
+}
@@ -0,0 +1,46 @@
+package pccit.finalproject.javaclient;
+
+// Error raised by the asynchronous ApiClient methods, telling callers why a request failed
+public class ApiException extends Exception {
+    // The kind of failure
+    public enum Kind {
+        NETWORK,      // The request could not be sent or the connection failed
+        HTTP_STATUS,  // The server answered with an unexpected status code
+        DECODE,       // The response body could not be parsed
+        TIMEOUT,      // No response arrived within the request's timeout or the call's deadline
+        CIRCUIT_OPEN  // Not sent, because the backend has been failing and calls are being short-circuited
+    }
+
+    private final Kind kind;
+    private final int statusCode;
+
+    public ApiException(Kind kind, String message, int statusCode, Throwable cause) {
+        super(message, cause);
+        this.kind = kind;
+        this.statusCode = statusCode;
+    }
+
+    // Create an exception for an unexpected status code
+    public static ApiException status(String endpoint, int statusCode) {
+        return new ApiException(Kind.HTTP_STATUS, endpoint + " returned status " + statusCode, statusCode, null);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    // Get the HTTP status code, or -1 if the server never answered
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    // Check whether the server rejected the request because we are not logged in, or not an admin
+    public boolean isUnauthorized() {
+        return statusCode == 401 || statusCode == 403;
+    }
+
+    // Check whether the server refused the request itself with a 4xx status, so sending it again will not help
+    public boolean isClientError() {
+        return statusCode >= 400 && statusCode < 500;
+    }
+}
@@ -0,0 +1,63 @@
+package pccit.finalproject.javaclient;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Metrics of every endpoint an ApiClient has called, created on first use. Each endpoint is also registered
+// as a platform MBean named pccit.finalproject.javaclient:type=ApiClient,node="<node>",endpoint="<endpoint>",
+// so it can be watched live from JConsole or VisualVM.
+public class ApiMetrics {
+    private static final Log log = Log.get(ApiMetrics.class);
+
+    private final String node;
+    private final Map<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+
+    public ApiMetrics(String node) {
+        this.node = node;
+    }
+
+    // Get the name of the node whose requests are measured
+    public String getNode() {
+        return node;
+    }
+
+    // Get the metrics of an endpoint, creating and registering them the first time
+    public EndpointMetrics endpoint(String endpoint) {
+        EndpointMetrics metrics = endpoints.get(endpoint);
+        if (metrics != null) {
+            return metrics;
+        }
+        return endpoints.computeIfAbsent(endpoint, key -> {
+            EndpointMetrics created = new EndpointMetrics(key);
+            register(node, created);
+            return created;
+        });
+    }
+
+    // Get the metrics of every endpoint called so far, sorted by endpoint
+    public List<EndpointMetrics> getEndpoints() {
+        List<EndpointMetrics> all = new ArrayList<>(endpoints.values());
+        all.sort((a, b) -> a.getEndpoint().compareTo(b.getEndpoint()));
+        return all;
+    }
+
+    private static void register(String node, EndpointMetrics metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("pccit.finalproject.javaclient:type=ApiClient,node="
+                    + ObjectName.quote(node) + ",endpoint=" + ObjectName.quote(metrics.getEndpoint()));
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name); // Left over from an earlier ApiClient instance
+            }
+            server.registerMBean(metrics, name);
+        } catch (JMException e) {
+            log.warn("Could not register metrics MBean for " + metrics.getEndpoint(), e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package pccit.finalproject.javaclient;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Live table of the endpoint metrics of every backend node, refreshed every second while the panel is on
+// screen, with the circuit breaker states and the EDT stall statistics underneath
+public class ApiStatsPanel extends JPanel {
+    private static final int REFRESH_MILLIS = 1000;
+
+    private final List<ApiClient> clients;
+    private final StatsTableModel tableModel = new StatsTableModel();
+    private final JLabel statusLabel = new JLabel(" "); // Circuit breaker state and EDT stalls
+    private final Timer refreshTimer;
+
+    public ApiStatsPanel(List<ApiClient> clients) {
+        super(new BorderLayout());
+        this.clients = clients;
+        JTable table = new JTable(tableModel);
+        table.getColumnModel().getColumn(0).setPreferredWidth(220);
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
+        setPreferredSize(new Dimension(1150, 200));
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+    }
+
+    // Only poll the metrics while the panel is shown
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refresh();
+        refreshTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        refreshTimer.stop();
+        super.removeNotify();
+    }
+
+    private void refresh() {
+        List<Object[]> rows = new ArrayList<>();
+        StringBuilder status = new StringBuilder();
+        for (ApiClient client : clients) {
+            for (EndpointMetrics endpoint : client.getMetrics().getEndpoints()) {
+                rows.add(toRow(clients.size() > 1 ? client.getNode() + ": " : "", endpoint));
+            }
+            status.append(client.getCircuitBreaker()).append("    ");
+        }
+        tableModel.setRows(rows);
+        EdtWatchdog watchdog = EdtWatchdog.getInstance();
+        statusLabel.setText(status + (watchdog != null ? watchdog.toString() : "EDT watchdog disabled"));
+    }
+
+    private static Object[] toRow(String prefix, EndpointMetrics endpoint) {
+        return new Object[] {
+                prefix + endpoint.getEndpoint(),
+                endpoint.getRequestCount(),
+                endpoint.getStatusClassCount(2),
+                endpoint.getStatusClassCount(3),
+                endpoint.getStatusClassCount(4),
+                endpoint.getStatusClassCount(5),
+                endpoint.getFailureCount(),
+                String.format("%.1f", endpoint.getBytesIn() / 1024.0),
+                String.format("%.1f", endpoint.getBytesOut() / 1024.0),
+                String.format("%.1f", endpoint.getLatencyP50Millis()),
+                String.format("%.1f", endpoint.getLatencyP95Millis()),
+                String.format("%.1f", endpoint.getLatencyP99Millis()),
+                String.format("%.1f", endpoint.getLatencyMaxMillis()),
+                endpoint.getRetryCount(),
+                endpoint.getHedgeCount() + " / " + endpoint.getHedgeWinCount(),
+                endpoint.getRejectedCount(),
+                endpoint.getDeadlineExceededCount()
+        };
+    }
+
+    // One row per endpoint, holding the values read at the last refresh
+    private static class StatsTableModel extends AbstractTableModel {
+        private static final String[] COLUMN_NAMES = { "Endpoint", "Requests", "2xx", "3xx", "4xx", "5xx", "Failed",
+                "In KB", "Out KB", "p50 ms", "p95 ms", "p99 ms", "Max ms", "Retries", "Hedged / won", "Rejected",
+                "Timed out" };
+
+        private List<Object[]> rows = new ArrayList<>();
+
+        void setRows(List<Object[]> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return rows.get(row)[column];
+        }
+    }
+}
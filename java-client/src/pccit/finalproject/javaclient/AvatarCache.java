@@ -0,0 +1,346 @@
+package pccit.finalproject.javaclient;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Two-tier avatar cache keyed by avatar URL, which should be absolute (see ApiClient.resolveUrl()) when users
+// come from several backend nodes, as each node has its own images:
+// - a bounded in-memory LRU of scaled ImageIcons, limited by the number of pixel bytes it holds
+// - an on-disk cache of the original image bytes together with their ETag / Last-Modified validators
+// Entries older than the revalidation interval are checked against the server with a conditional request,
+// so an unchanged avatar costs a 304 instead of a full download and decode.
+public class AvatarCache {
+    private static final Log log = Log.get(AvatarCache.class);
+
+    private static final long DEFAULT_MAX_MEMORY_BYTES = 16L * 1024 * 1024;
+    private static final long DEFAULT_REVALIDATE_MILLIS = 5 * 60 * 1000;
+
+    private final int width;
+    private final int height;
+    private final long maxMemoryBytes;
+    private final long revalidateMillis;
+    private final Path diskDir;
+
+    // Access-ordered map, so iteration starts from the least recently used entry
+    private final LinkedHashMap<String, MemoryEntry> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    private final Set<String> rejected = ConcurrentHashMap.newKeySet(); // Last fetch was refused with a 4xx status
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+
+    // Create a cache of width x height avatars using the default memory budget and disk location
+    public AvatarCache(int width, int height) {
+        this(width, height, DEFAULT_MAX_MEMORY_BYTES, DEFAULT_REVALIDATE_MILLIS,
+                Paths.get(System.getProperty("user.home"), ".nz-discovery-admin", "avatars"));
+    }
+
+    public AvatarCache(int width, int height, long maxMemoryBytes, long revalidateMillis, Path diskDir) {
+        this.width = width;
+        this.height = height;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.revalidateMillis = revalidateMillis;
+        this.diskDir = diskDir;
+    }
+
+    // Get the scaled avatar for the given avatar_url, or null if it cannot be loaded.
+    // Blocks on network and disk I/O, so it must not be called on the Event Dispatch Thread.
+    public ImageIcon getAvatar(String avatarUrl) {
+        if (avatarUrl == null || avatarUrl.isEmpty()) {
+            return null;
+        }
+
+        MemoryEntry cached;
+        synchronized (memory) {
+            cached = memory.get(avatarUrl);
+        }
+        long now = System.currentTimeMillis();
+        if (cached != null && now - cached.validatedAt < revalidateMillis) {
+            memoryHits.incrementAndGet();
+            return cached.icon;
+        }
+
+        DiskEntry disk = readDiskEntry(avatarUrl);
+        ApiClient client = ApiClientPool.getInstance().getClientForUrl(avatarUrl);
+        ApiClient.AvatarImage response = fetch(client, avatarUrl, disk);
+
+        if (response != null && response.isNotModified() && disk != null) {
+            revalidations.incrementAndGet();
+            if (cached != null) {
+                memoryHits.incrementAndGet();
+                cached.validatedAt = now;
+                return cached.icon;
+            }
+            diskHits.incrementAndGet();
+            return cacheInMemory(avatarUrl, disk.bytes, now);
+        }
+
+        if (response != null && !response.isNotModified()) {
+            misses.incrementAndGet();
+            byte[] bytes = response.getBytes();
+            writeDiskEntry(avatarUrl, bytes, response.getEtag(), response.getLastModified());
+            return cacheInMemory(avatarUrl, bytes, now);
+        }
+
+        // Server unreachable: fall back to whatever we already have, without marking it as revalidated
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            return cached.icon;
+        }
+        if (disk != null) {
+            diskHits.incrementAndGet();
+            return cacheInMemory(avatarUrl, disk.bytes, 0);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    // Check whether the server refused the last fetch of the avatar with a 4xx status, e.g. because the image is
+    // gone, so fetching it again will not help
+    public boolean isRejected(String avatarUrl) {
+        return rejected.contains(avatarUrl);
+    }
+
+    // Get the scaled avatar if it is already in memory, without any I/O. Safe to call from the EDT.
+    public ImageIcon peek(String avatarUrl) {
+        synchronized (memory) {
+            MemoryEntry cached = memory.get(avatarUrl);
+            return cached == null ? null : cached.icon;
+        }
+    }
+
+    // Check whether the avatar is in memory and was validated recently enough to be used as is
+    public boolean isFresh(String avatarUrl) {
+        synchronized (memory) {
+            MemoryEntry cached = memory.get(avatarUrl);
+            return cached != null && System.currentTimeMillis() - cached.validatedAt < revalidateMillis;
+        }
+    }
+
+    // Drop an entry from both tiers, e.g. after the user has been deleted
+    public void invalidate(String avatarUrl) {
+        synchronized (memory) {
+            MemoryEntry removed = memory.remove(avatarUrl);
+            if (removed != null) {
+                memoryBytes -= removed.bytes;
+            }
+        }
+        try {
+            Files.deleteIfExists(dataFile(avatarUrl));
+            Files.deleteIfExists(metaFile(avatarUrl));
+        } catch (IOException e) {
+            log.warn("Could not remove cached avatar " + avatarUrl, e);
+        }
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    public long getMemoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    public int getMemoryEntryCount() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AvatarCache[memoryHits=%d, diskHits=%d, misses=%d, evictions=%d, revalidations=%d, "
+                        + "entries=%d, memoryBytes=%d/%d]", getMemoryHits(), getDiskHits(), getMisses(), getEvictions(),
+                getRevalidations(), getMemoryEntryCount(), getMemoryBytes(), maxMemoryBytes);
+    }
+
+    // Fetch the avatar, conditionally if it is on disk, or get null if the request failed
+    private ApiClient.AvatarImage fetch(ApiClient client, String avatarUrl, DiskEntry disk) {
+        try {
+            ApiClient.AvatarImage response = client.getAvatarImageAsync(avatarUrl,
+                    disk == null ? null : disk.etag, disk == null ? null : disk.lastModified).join();
+            rejected.remove(avatarUrl);
+            return response;
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof ApiException && ((ApiException) cause).isClientError()) {
+                rejected.add(avatarUrl);
+            } else {
+                rejected.remove(avatarUrl);
+            }
+            log.warn("Could not fetch avatar " + avatarUrl, cause);
+            return null;
+        }
+    }
+
+    // Decode and scale the image, then add it to the in-memory LRU, evicting old entries to stay in budget
+    private ImageIcon cacheInMemory(String avatarUrl, byte[] bytes, long validatedAt) {
+        ImageIcon icon = decodeAndScale(bytes);
+        if (icon == null) {
+            return null;
+        }
+        long size = (long) icon.getIconWidth() * icon.getIconHeight() * 4;
+        synchronized (memory) {
+            MemoryEntry previous = memory.put(avatarUrl, new MemoryEntry(icon, size, validatedAt));
+            if (previous != null) {
+                memoryBytes -= previous.bytes;
+            }
+            memoryBytes += size;
+            Iterator<Map.Entry<String, MemoryEntry>> it = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+                Map.Entry<String, MemoryEntry> eldest = it.next();
+                if (eldest.getKey().equals(avatarUrl)) {
+                    continue; // Never evict the entry we are about to return
+                }
+                memoryBytes -= eldest.getValue().bytes;
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        return icon;
+    }
+
+    private ImageIcon decodeAndScale(byte[] bytes) {
+        try {
+            // Decode with subsampling and scale to fit JLabel
+            BufferedImage image = ImageScaler.createThumbnail(bytes, width, height);
+            return image == null ? null : new ImageIcon(image);
+        } catch (IOException e) {
+            log.warn("Could not decode avatar", e);
+            return null;
+        }
+    }
+
+    private DiskEntry readDiskEntry(String avatarUrl) {
+        Path data = dataFile(avatarUrl);
+        Path meta = metaFile(avatarUrl);
+        if (!Files.isRegularFile(data) || !Files.isRegularFile(meta)) {
+            return null;
+        }
+        try {
+            Properties properties = new Properties();
+            try (var in = Files.newInputStream(meta)) {
+                properties.load(in);
+            }
+            // Guard against a stale entry stored under a colliding file name
+            if (!avatarUrl.equals(properties.getProperty("url"))) {
+                return null;
+            }
+            return new DiskEntry(Files.readAllBytes(data), properties.getProperty("etag"),
+                    properties.getProperty("lastModified"));
+        } catch (IOException e) {
+            log.warn("Could not read cached avatar " + avatarUrl, e);
+            return null;
+        }
+    }
+
+    private void writeDiskEntry(String avatarUrl, byte[] bytes, String etag, String lastModified) {
+        try {
+            Files.createDirectories(diskDir);
+            Properties properties = new Properties();
+            properties.setProperty("url", avatarUrl);
+            if (etag != null) {
+                properties.setProperty("etag", etag);
+            }
+            if (lastModified != null) {
+                properties.setProperty("lastModified", lastModified);
+            }
+            // Write to temporary files and move them into place, so a crash never leaves a half-written entry
+            Path tmpData = Files.createTempFile(diskDir, "avatar", ".tmp");
+            Path tmpMeta = Files.createTempFile(diskDir, "avatar", ".tmp");
+            Files.write(tmpData, bytes);
+            try (var out = Files.newOutputStream(tmpMeta)) {
+                properties.store(out, null);
+            }
+            Files.move(tmpData, dataFile(avatarUrl), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmpMeta, metaFile(avatarUrl), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Could not cache avatar " + avatarUrl, e);
+        }
+    }
+
+    private Path dataFile(String avatarUrl) {
+        return diskDir.resolve(fileKey(avatarUrl) + ".img");
+    }
+
+    private Path metaFile(String avatarUrl) {
+        return diskDir.resolve(fileKey(avatarUrl) + ".properties");
+    }
+
+    private static String fileKey(String avatarUrl) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(avatarUrl.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Scaled icon held in memory, along with when it was last confirmed current by the server
+    private static class MemoryEntry {
+        private final ImageIcon icon;
+        private final long bytes;
+        private volatile long validatedAt;
+
+        MemoryEntry(ImageIcon icon, long bytes, long validatedAt) {
+            this.icon = icon;
+            this.bytes = bytes;
+            this.validatedAt = validatedAt;
+        }
+    }
+
+    // Original image bytes read from disk, with the validators the server sent for them
+    private static class DiskEntry {
+        private final byte[] bytes;
+        private final String etag;
+        private final String lastModified;
+
+        DiskEntry(byte[] bytes, String etag, String lastModified) {
+            this.bytes = bytes;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+}
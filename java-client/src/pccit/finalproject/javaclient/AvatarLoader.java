@@ -0,0 +1,155 @@
+package pccit.finalproject.javaclient;
+
+import javax.swing.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Loads avatars on a small, bounded pool of worker threads. Pending requests are ordered by priority
+// (the selected row first, then visible rows, then prefetch), duplicate requests for the same key are
+// merged, and requests that are no longer wanted can be cancelled before or while they run.
+// Methods are intended to be called from the Event Dispatch Thread; callbacks are delivered on it too.
+public class AvatarLoader {
+    private static final Log log = Log.get(AvatarLoader.class);
+
+    public static final int PRIORITY_SELECTED = 0;
+    public static final int PRIORITY_VISIBLE = 1;
+    public static final int PRIORITY_PREFETCH = 2;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<String, LoadTask> tasks = new HashMap<>(); // Pending or running tasks by key
+    private final AtomicLong sequence = new AtomicLong(); // Keeps FIFO order within the same priority
+    private final AtomicLong cancelled = new AtomicLong();
+
+    public AvatarLoader(int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "avatar-loader-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Request a load. If the same key is already pending, its callback is replaced and its priority is
+    // raised if needed; otherwise a new task is queued.
+    public void submit(String key, int priority, Supplier<ImageIcon> loader, Consumer<ImageIcon> callback) {
+        LoadTask existing = tasks.get(key);
+        if (existing != null) {
+            existing.callback = callback;
+            if (existing.priority <= priority || existing.started) {
+                return;
+            }
+            // Re-queue at the higher priority
+            executor.remove(existing);
+            existing.cancel(false);
+        }
+        LoadTask task = new LoadTask(key, priority, sequence.getAndIncrement(), loader, callback);
+        tasks.put(key, task);
+        executor.execute(task);
+    }
+
+    // Cancel the request for the given key, interrupting it if it has already started
+    public void cancel(String key) {
+        LoadTask task = tasks.remove(key);
+        if (task != null) {
+            executor.remove(task);
+            task.cancel(true);
+            cancelled.incrementAndGet();
+        }
+    }
+
+    // Cancel every request whose key starts with the prefix and is not in the wanted set
+    public void retainOnly(String prefix, Collection<String> wantedKeys) {
+        Set<String> wanted = new HashSet<>(wantedKeys);
+        Iterator<Map.Entry<String, LoadTask>> it = tasks.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, LoadTask> entry = it.next();
+            if (entry.getKey().startsWith(prefix) && !wanted.contains(entry.getKey())) {
+                executor.remove(entry.getValue());
+                entry.getValue().cancel(true);
+                cancelled.incrementAndGet();
+                it.remove();
+            }
+        }
+    }
+
+    // Cancel all outstanding requests
+    public void cancelAll() {
+        for (LoadTask task : tasks.values()) {
+            executor.remove(task);
+            task.cancel(true);
+            cancelled.incrementAndGet();
+        }
+        tasks.clear();
+    }
+
+    public int getPendingCount() {
+        return tasks.size();
+    }
+
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    // A queued load, ordered by priority and then by submission order
+    private class LoadTask extends FutureTask<ImageIcon> implements Comparable<LoadTask> {
+        private final String key;
+        private final int priority;
+        private final long order;
+        private volatile boolean started;
+        private volatile Consumer<ImageIcon> callback;
+
+        LoadTask(String key, int priority, long order, Supplier<ImageIcon> loader, Consumer<ImageIcon> callback) {
+            super(loader::get);
+            this.key = key;
+            this.priority = priority;
+            this.order = order;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            started = true;
+            super.run();
+        }
+
+        @Override
+        protected void done() {
+            SwingUtilities.invokeLater(() -> {
+                if (tasks.get(key) == this) {
+                    tasks.remove(key);
+                }
+                if (isCancelled()) {
+                    return;
+                }
+                try {
+                    callback.accept(get());
+                } catch (Exception e) {
+                    log.warn("Avatar load failed for " + key, e);
+                    callback.accept(null);
+                }
+            });
+        }
+
+        @Override
+        public int compareTo(LoadTask other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            return Long.compare(order, other.order);
+        }
+    }
+}
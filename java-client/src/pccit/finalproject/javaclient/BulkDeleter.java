@@ -0,0 +1,127 @@
+package pccit.finalproject.javaclient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+// Deletes many users through ApiClient with at most maxConcurrency requests in flight and at most
+// ratePerSecond requests started per second, so a large clean-up does not overload the backend.
+// Progress is reported after every delete and the outcome of each one is collected into a single Result.
+public class BulkDeleter {
+    private final ApiClient apiClient;
+    private final int maxConcurrency;
+    private final double ratePerSecond;
+    private final Executor executor;
+    private volatile boolean cancelled;
+
+    public BulkDeleter(ApiClient apiClient, int maxConcurrency, double ratePerSecond, Executor executor) {
+        this.apiClient = apiClient;
+        this.maxConcurrency = maxConcurrency;
+        this.ratePerSecond = ratePerSecond;
+        this.executor = executor;
+    }
+
+    // Start deleting the given users. The progress callback receives (completed, total) from background
+    // threads; the returned future completes once every started delete has finished.
+    public CompletableFuture<Result> deleteAll(List<Integer> userIds, BiConsumer<Integer, Integer> progress) {
+        return CompletableFuture.supplyAsync(() -> run(userIds, progress), executor);
+    }
+
+    // Stop starting new deletes. Deletes already in flight still complete and are reported.
+    public void cancel() {
+        cancelled = true;
+    }
+
+    private Result run(List<Integer> userIds, BiConsumer<Integer, Integer> progress) {
+        Semaphore permits = new Semaphore(maxConcurrency);
+        AtomicInteger completed = new AtomicInteger();
+        List<Integer> succeeded = Collections.synchronizedList(new ArrayList<>());
+        Map<Integer, String> failed = Collections.synchronizedMap(new LinkedHashMap<>());
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+        long intervalNanos = ratePerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond) : 0;
+        long nextStart = System.nanoTime();
+        int started = 0;
+        try {
+            for (int userId : userIds) {
+                if (cancelled) {
+                    break;
+                }
+                // Rate limit: wait for the next start slot, then for a free concurrency permit
+                long wait = nextStart - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                nextStart = Math.max(nextStart, System.nanoTime() - intervalNanos) + intervalNanos;
+                permits.acquire();
+
+                started++;
+                pending.add(apiClient.deleteUserByIdAsync(userId).handle((result, error) -> {
+                    if (error == null) {
+                        succeeded.add(userId);
+                    } else {
+                        failed.put(userId, describe(error));
+                    }
+                    permits.release();
+                    progress.accept(completed.incrementAndGet(), userIds.size());
+                    return null;
+                }));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        return new Result(userIds.size(), started, new ArrayList<>(succeeded), new LinkedHashMap<>(failed));
+    }
+
+    private static String describe(Throwable error) {
+        while (error.getCause() != null && !(error instanceof ApiException)) {
+            error = error.getCause();
+        }
+        return error.getMessage();
+    }
+
+    // Outcome of a bulk delete
+    public static class Result {
+        private final int requested;
+        private final int started;
+        private final List<Integer> succeeded;
+        private final Map<Integer, String> failed;
+
+        Result(int requested, int started, List<Integer> succeeded, Map<Integer, String> failed) {
+            this.requested = requested;
+            this.started = started;
+            this.succeeded = succeeded;
+            this.failed = failed;
+        }
+
+        // Number of users that were asked to be deleted
+        public int getRequested() {
+            return requested;
+        }
+
+        // Number of deletes actually sent, which is lower than requested if the run was cancelled
+        public int getStarted() {
+            return started;
+        }
+
+        // IDs of the users that were deleted
+        public List<Integer> getSucceeded() {
+            return succeeded;
+        }
+
+        // IDs of the users that could not be deleted, with the reason
+        public Map<Integer, String> getFailed() {
+            return failed;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package pccit.finalproject.javaclient;
+
+import java.util.concurrent.CompletableFuture;
+
+// Future whose dependent stages (thenApply, handle, ...) are of the same type, and which runs an action when
+// it is cancelled; each dependent stage cancels the stage it was derived from. A cancel on the last stage of a
+// call therefore travels back up the chain to the HTTP exchange, instead of only abandoning the result.
+class CancellableFuture<T> extends CompletableFuture<T> {
+    private final Runnable onCancel;
+
+    CancellableFuture(Runnable onCancel) {
+        this.onCancel = onCancel;
+    }
+
+    @Override
+    public <U> CompletableFuture<U> newIncompleteFuture() {
+        return new CancellableFuture<>(() -> cancel(true));
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        onCancel.run();
+        return cancelled;
+    }
+}
@@ -0,0 +1,143 @@
+package pccit.finalproject.javaclient;
+
+import java.util.concurrent.TimeUnit;
+
+// Stops sending requests to a backend that keeps failing, so callers fail fast instead of each waiting
+// for its own timeout, and the backend gets room to recover.
+// - Closed: requests pass, and the outcomes of the last windowSize requests are kept. Once at least
+//   minimumCalls outcomes are known and failureRatio of them or more are failures, the breaker opens.
+// - Open: requests are rejected straight away. After openMillis the breaker half-opens.
+// - Half open: a single trial request is let through. Success closes the breaker, failure opens it again.
+// A failure is a request that got no response or a 5xx status; any other response counts as a success.
+public class CircuitBreaker {
+    private static final Log log = Log.get(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int minimumCalls;
+    private final double failureRatio;
+    private final long openNanos;
+
+    // Ring buffer of the most recent outcomes while closed, true for a failure
+    private final boolean[] outcomes;
+    private int nextOutcome;
+    private int recordedOutcomes;
+    private int failuresInWindow;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialInFlight;
+    private long rejectedCount;
+    private long openedCount;
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRatio, long openMillis) {
+        this.name = name;
+        this.outcomes = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRatio = failureRatio;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    // Ask to send a request. Returns false if the breaker is open, or half open with its trial request already
+    // in flight. Every request that is let through must be reported with onSuccess, onFailure or onAbandoned.
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                rejectedCount++;
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+            log.info("Circuit %s half open, sending a trial request", name);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                rejectedCount++;
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            reset(State.CLOSED);
+            log.info("Circuit %s closed", name);
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recordedOutcomes >= minimumCalls && failuresInWindow >= failureRatio * recordedOutcomes) {
+                open();
+            }
+        }
+    }
+
+    // Report a request that was cancelled before its outcome was known, e.g. the slower of two hedged requests
+    public synchronized void onAbandoned() {
+        if (state == State.HALF_OPEN) {
+            trialInFlight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+            return State.HALF_OPEN; // The next request will be the trial
+        }
+        return state;
+    }
+
+    // Number of requests rejected without being sent
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    // Number of times the breaker has opened
+    public synchronized long getOpenedCount() {
+        return openedCount;
+    }
+
+    private void record(boolean failure) {
+        if (recordedOutcomes == outcomes.length) {
+            if (outcomes[nextOutcome]) {
+                failuresInWindow--;
+            }
+        } else {
+            recordedOutcomes++;
+        }
+        outcomes[nextOutcome] = failure;
+        if (failure) {
+            failuresInWindow++;
+        }
+        nextOutcome = (nextOutcome + 1) % outcomes.length;
+    }
+
+    private void open() {
+        reset(State.OPEN);
+        openedAt = System.nanoTime();
+        openedCount++;
+        log.warn("Circuit %s open, failing requests for %d ms", name, TimeUnit.NANOSECONDS.toMillis(openNanos));
+    }
+
+    private void reset(State newState) {
+        state = newState;
+        trialInFlight = false;
+        nextOutcome = 0;
+        recordedOutcomes = 0;
+        failuresInWindow = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Circuit %s: %s, opened %d times, %d requests rejected", name, getState(),
+                openedCount, rejectedCount);
+    }
+}
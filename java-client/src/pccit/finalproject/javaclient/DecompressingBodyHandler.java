@@ -0,0 +1,173 @@
+package pccit.finalproject.javaclient;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+// Body handler that exposes the response body as an InputStream decoded according to its Content-Encoding
+// (gzip or deflate). Decompression happens as the caller reads, so the compressed body is never buffered
+// as a whole. Wire and decoded byte counts are added to the given TransferStats when the stream is closed.
+// Requests using this handler should send the ACCEPT_ENCODING value in their Accept-Encoding header.
+public class DecompressingBodyHandler implements HttpResponse.BodyHandler<InputStream> {
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private final TransferStats stats;
+
+    public DecompressingBodyHandler(TransferStats stats) {
+        this.stats = stats;
+    }
+
+    // Abort a body another thread is reading, e.g. when its deadline has passed: the read in progress (or the
+    // next one) fails with an IOException. Only the network side is closed here; the decoder is closed by the
+    // reading thread when it closes the body, as it must not be released while that thread may be using it.
+    public static void abort(InputStream body) throws IOException {
+        if (body instanceof DecodingInputStream) {
+            ((DecodingInputStream) body).wire.close();
+        } else {
+            body.close();
+        }
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<InputStream> apply(HttpResponse.ResponseInfo responseInfo) {
+        String encoding = responseInfo.headers().firstValue("Content-Encoding")
+                .map(value -> value.trim().toLowerCase(Locale.ROOT))
+                .orElse("identity");
+        return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(),
+                body -> new DecodingInputStream(body, encoding, stats));
+    }
+
+    // Counts bytes on both sides of the decoder. The decoder is created on the first read rather than in
+    // the mapping function, because GZIPInputStream reads its header eagerly and the mapping function
+    // must not block the HttpClient.
+    private static class DecodingInputStream extends FilterInputStream {
+        private final CountingInputStream wire;
+        private final String encoding;
+        private final TransferStats stats;
+        private long decoded;
+        private boolean opened;
+        private boolean recorded;
+
+        DecodingInputStream(InputStream body, String encoding, TransferStats stats) {
+            super(null);
+            this.wire = new CountingInputStream(body);
+            this.encoding = encoding;
+            this.stats = stats;
+        }
+
+        private InputStream decoder() throws IOException {
+            if (!opened) {
+                opened = true;
+                switch (encoding) {
+                    case "gzip":
+                    case "x-gzip":
+                        in = new GZIPInputStream(wire, 8192);
+                        break;
+                    case "deflate":
+                        in = new InflaterInputStream(wire);
+                        break;
+                    case "identity":
+                        in = wire;
+                        break;
+                    default:
+                        throw new IOException("Unsupported Content-Encoding: " + encoding);
+                }
+            }
+            return in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = decoder().read();
+            if (b >= 0) {
+                decoded++;
+            } else {
+                record();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = decoder().read(b, off, len);
+            if (n > 0) {
+                decoded += n;
+            } else if (n < 0) {
+                record();
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = decoder().skip(n);
+            decoded += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return opened ? in.available() : 0;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            record();
+            if (in != null) {
+                in.close();
+            } else {
+                wire.close();
+            }
+        }
+
+        private void record() {
+            if (!recorded) {
+                recorded = true;
+                stats.record(!encoding.equals("identity"), wire.count, decoded);
+            }
+        }
+    }
+
+    // Counts the bytes read from the underlying stream
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package pccit.finalproject.javaclient;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Detects stalls of the Event Dispatch Thread. An EventQueue pushed in front of the system queue times every
+// event it dispatches, and a background thread samples that timing: once the event currently being dispatched
+// has run longer than the threshold, the EDT's stack is captured and logged while it is still stuck. When the
+// event finally finishes, the stall's full duration is recorded.
+// Nested event loops (modal dialogs) keep the EDT responsive, so time spent in them does not count towards
+// the event that opened them.
+// Counts and durations are available from the getters and as the platform MBean
+// pccit.finalproject.javaclient:type=EdtWatchdog.
+public class EdtWatchdog implements EdtWatchdogMXBean {
+    private static final Log log = Log.get(EdtWatchdog.class);
+    private static final long DEFAULT_THRESHOLD_MILLIS = 200;
+
+    private static EdtWatchdog instance;
+
+    private final long thresholdNanos;
+    private final ScheduledExecutorService sampler;
+    private final LatencyHistogram stallDurations = new LatencyHistogram();
+    private final AtomicLong stallCount = new AtomicLong();
+    private final AtomicLong totalStallNanos = new AtomicLong();
+
+    // Written only on the EDT, read by the sampler
+    private volatile Thread edt;
+    private volatile long dispatchStartedAt; // When the EDT's current stretch of work began, 0 while it is idle
+    private volatile long capturedStartedAt; // dispatchStartedAt of the stall whose stack has been captured
+
+    private EdtWatchdog(long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edt-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Start watching the EDT, using the threshold from the nzdiscovery.edtStallMillis system property
+    // (200 ms by default; 0 disables the watchdog). Returns the running watchdog, or null if disabled.
+    public static synchronized EdtWatchdog install() {
+        return install(Long.getLong("nzdiscovery.edtStallMillis", DEFAULT_THRESHOLD_MILLIS));
+    }
+
+    public static synchronized EdtWatchdog install(long thresholdMillis) {
+        if (instance != null || thresholdMillis <= 0) {
+            return instance;
+        }
+        EdtWatchdog watchdog = new EdtWatchdog(thresholdMillis);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(watchdog.new TimingEventQueue());
+        long period = Math.max(thresholdMillis / 4, 1);
+        watchdog.sampler.scheduleAtFixedRate(watchdog::sample, period, period, TimeUnit.MILLISECONDS);
+        // Starting the platform MBean server takes a few hundred milliseconds, which the window should not wait for
+        watchdog.sampler.execute(() -> {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(watchdog,
+                        new ObjectName("pccit.finalproject.javaclient:type=EdtWatchdog"));
+            } catch (JMException e) {
+                log.warn("Could not register EDT watchdog MBean", e);
+            }
+        });
+        instance = watchdog;
+        return watchdog;
+    }
+
+    // Get the installed watchdog, or null if none is running
+    public static synchronized EdtWatchdog getInstance() {
+        return instance;
+    }
+
+    @Override
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    @Override
+    public long getStallCount() {
+        return stallCount.get();
+    }
+
+    @Override
+    public double getTotalStallMillis() {
+        return totalStallNanos.get() / 1e6;
+    }
+
+    @Override
+    public double getMaxStallMillis() {
+        return stallDurations.getMaxMillis();
+    }
+
+    @Override
+    public double getStallP95Millis() {
+        return stallDurations.getPercentileMillis(0.95);
+    }
+
+    // Capture the EDT's stack the first time the current event is seen running past the threshold
+    private void sample() {
+        long startedAt = dispatchStartedAt;
+        Thread thread = edt;
+        if (startedAt == 0 || thread == null || startedAt == capturedStartedAt) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startedAt;
+        if (elapsed < thresholdNanos) {
+            return;
+        }
+        capturedStartedAt = startedAt;
+        Exception stack = new Exception("EDT stack after " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms");
+        stack.setStackTrace(thread.getStackTrace());
+        log.warn("Event Dispatch Thread blocked for over " + getThresholdMillis() + " ms", stack);
+    }
+
+    // Record an event that ran past the threshold once it has finished
+    private void recordStall(long elapsedNanos, AWTEvent event) {
+        stallCount.incrementAndGet();
+        totalStallNanos.addAndGet(elapsedNanos);
+        stallDurations.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        log.warn("EDT stall of %d ms while dispatching %s", TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                event.getClass().getSimpleName());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EDT stalls over %d ms: %d, total %.0f ms, max %.0f ms, p95 %.0f ms",
+                getThresholdMillis(), getStallCount(), getTotalStallMillis(), getMaxStallMillis(),
+                getStallP95Millis());
+    }
+
+    // Times each dispatched event. The EDT counts as idle while it waits for the next event, so a modal
+    // dialog's nested event loop only times the events it dispatches, and the event that opened the dialog
+    // is timed again from the moment the nested loop hands control back.
+    private class TimingEventQueue extends EventQueue {
+        private int depth; // Nesting of dispatchEvent calls, only touched on the EDT
+
+        @Override
+        public AWTEvent getNextEvent() throws InterruptedException {
+            dispatchStartedAt = 0;
+            AWTEvent event = super.getNextEvent();
+            dispatchStartedAt = System.nanoTime();
+            return event;
+        }
+
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            edt = Thread.currentThread();
+            if (dispatchStartedAt == 0) {
+                dispatchStartedAt = System.nanoTime();
+            }
+            depth++;
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                depth--;
+                long finishedAt = System.nanoTime();
+                long elapsed = finishedAt - dispatchStartedAt;
+                if (elapsed >= thresholdNanos) {
+                    recordStall(elapsed, event);
+                }
+                dispatchStartedAt = depth > 0 ? finishedAt : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package pccit.finalproject.javaclient;
+
+// JMX view of the Event Dispatch Thread stall statistics
+public interface EdtWatchdogMXBean {
+    long getThresholdMillis();
+
+    long getStallCount();
+
+    double getTotalStallMillis();
+
+    double getMaxStallMillis();
+
+    double getStallP95Millis();
+}
@@ -0,0 +1,193 @@
+package pccit.finalproject.javaclient;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Request counts, status codes, bytes and latency of one ApiClient endpoint, e.g. "GET /users".
+// Latency runs from sending the request until the response is available to the caller: the whole body for
+// buffered responses, or just the headers for streamed ones. Every request sent counts, so a call that was
+// retried or hedged contributes one request per attempt. Safe to update from any thread.
+public class EndpointMetrics implements EndpointMetricsMXBean {
+    private final String endpoint;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final Map<Integer, LongAdder> statusCounts = new ConcurrentHashMap<>();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder deadlinesExceeded = new LongAdder();
+
+    EndpointMetrics(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    // Record a request that received a response with the given status
+    void recordResponse(int statusCode, long requestBytes, long elapsedNanos) {
+        requests.increment();
+        statusCounts.computeIfAbsent(statusCode, key -> new LongAdder()).increment();
+        bytesOut.add(Math.max(requestBytes, 0));
+        latency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Record a request that failed without a response
+    void recordFailure(long requestBytes, long elapsedNanos) {
+        requests.increment();
+        failures.increment();
+        bytesOut.add(Math.max(requestBytes, 0));
+        latency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Record a request that was cancelled before its response arrived, e.g. the slower of two hedged requests
+    void recordCancelled(long requestBytes) {
+        requests.increment();
+        cancelled.increment();
+        bytesOut.add(Math.max(requestBytes, 0));
+    }
+
+    // Record response body bytes as they arrive
+    void recordBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    void recordHedge() {
+        hedges.increment();
+    }
+
+    void recordHedgeWin() {
+        hedgeWins.increment();
+    }
+
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    void recordDeadlineExceeded() {
+        deadlinesExceeded.increment();
+    }
+
+    @Override
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    @Override
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public long getCancelledCount() {
+        return cancelled.sum();
+    }
+
+    @Override
+    public Map<Integer, Long> getStatusCounts() {
+        Map<Integer, Long> counts = new TreeMap<>();
+        statusCounts.forEach((status, count) -> counts.put(status, count.sum()));
+        return counts;
+    }
+
+    // Number of responses whose status is in the given class, e.g. 2 for 2xx
+    public long getStatusClassCount(int statusClass) {
+        long total = 0;
+        for (Map.Entry<Integer, LongAdder> entry : statusCounts.entrySet()) {
+            if (entry.getKey() / 100 == statusClass) {
+                total += entry.getValue().sum();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public double getLatencyMeanMillis() {
+        return latency.getMeanMillis();
+    }
+
+    @Override
+    public double getLatencyP50Millis() {
+        return latency.getPercentileMillis(0.50);
+    }
+
+    @Override
+    public double getLatencyP95Millis() {
+        return latency.getPercentileMillis(0.95);
+    }
+
+    @Override
+    public double getLatencyP99Millis() {
+        return latency.getPercentileMillis(0.99);
+    }
+
+    @Override
+    public double getLatencyMaxMillis() {
+        return latency.getMaxMillis();
+    }
+
+    // Latency below which the given fraction (0 to 1) of the requests completed
+    public double getLatencyPercentileMillis(double fraction) {
+        return latency.getPercentileMillis(fraction);
+    }
+
+    @Override
+    public long getRetryCount() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    @Override
+    public long getHedgeWinCount() {
+        return hedgeWins.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getDeadlineExceededCount() {
+        return deadlinesExceeded.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: requests=%d failures=%d cancelled=%d statuses=%s in=%d B out=%d B "
+                        + "p50=%.1f ms p95=%.1f ms p99=%.1f ms max=%.1f ms "
+                        + "retries=%d hedges=%d (%d won) rejected=%d deadlines exceeded=%d",
+                endpoint, getRequestCount(), getFailureCount(), getCancelledCount(), getStatusCounts(), getBytesIn(),
+                getBytesOut(),
+                getLatencyP50Millis(), getLatencyP95Millis(), getLatencyP99Millis(), getLatencyMaxMillis(),
+                getRetryCount(), getHedgeCount(), getHedgeWinCount(), getRejectedCount(), getDeadlineExceededCount());
+    }
+}
@@ -0,0 +1,48 @@
+package pccit.finalproject.javaclient;
+
+import java.util.Map;
+
+// JMX view of the metrics of one ApiClient endpoint
+public interface EndpointMetricsMXBean {
+    String getEndpoint();
+
+    long getRequestCount();
+
+    // Requests that got no response at all, e.g. connection refused or timed out
+    long getFailureCount();
+
+    // Requests abandoned before their response arrived
+    long getCancelledCount();
+
+    // Number of responses per HTTP status code
+    Map<Integer, Long> getStatusCounts();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    double getLatencyMeanMillis();
+
+    double getLatencyP50Millis();
+
+    double getLatencyP95Millis();
+
+    double getLatencyP99Millis();
+
+    double getLatencyMaxMillis();
+
+    // Attempts started again after a failed request
+    long getRetryCount();
+
+    // Second requests sent because the first was slower than the hedging percentile
+    long getHedgeCount();
+
+    // Hedged requests that answered before the original one
+    long getHedgeWinCount();
+
+    // Calls failed straight away because the circuit breaker was open
+    long getRejectedCount();
+
+    // Calls failed because their deadline passed
+    long getDeadlineExceededCount();
+}
@@ -0,0 +1,65 @@
+package pccit.finalproject.javaclient;
+
+import java.time.Duration;
+
+// How ApiClient sends the requests of one endpoint:
+// - attemptTimeout: how long a single request may wait for its response to start
+// - deadline: how long the whole call may take, including retries and backoff
+// - maxAttempts: how many requests a call may send in total (1 disables retries)
+// - idempotent: whether the request may be repeated after it has reached the server. Calls that are not
+//   idempotent are only retried when the connection could not be made, so the server never saw them.
+// - hedgePercentile: for GETs, send a second request when the first has been outstanding longer than this
+//   latency percentile of the endpoint (e.g. 0.95), and use whichever answers first; 0 disables hedging
+public class EndpointPolicy {
+    private final Duration attemptTimeout;
+    private final Duration deadline;
+    private final int maxAttempts;
+    private final boolean idempotent;
+    private final double hedgePercentile;
+
+    public EndpointPolicy(Duration attemptTimeout, Duration deadline, int maxAttempts, boolean idempotent,
+                          double hedgePercentile) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (hedgePercentile < 0 || hedgePercentile >= 1) {
+            throw new IllegalArgumentException("hedgePercentile must be in [0, 1)");
+        }
+        this.attemptTimeout = attemptTimeout;
+        this.deadline = deadline;
+        this.maxAttempts = maxAttempts;
+        this.idempotent = idempotent;
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public Duration getAttemptTimeout() {
+        return attemptTimeout;
+    }
+
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public boolean isHedged() {
+        return hedgePercentile > 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("attempt timeout %d ms, deadline %d ms, %d attempts, %s%s", attemptTimeout.toMillis(),
+                deadline.toMillis(), maxAttempts, idempotent ? "idempotent" : "not idempotent",
+                isHedged() ? ", hedged at p" + Math.round(hedgePercentile * 100) : "");
+    }
+}
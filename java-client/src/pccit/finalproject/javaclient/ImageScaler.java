@@ -0,0 +1,121 @@
+package pccit.finalproject.javaclient;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+// Thumbnail pipeline used in place of Image.getScaledInstance(SCALE_SMOOTH):
+// 1. decode with source subsampling, so a large upload is never decoded at full resolution
+// 2. halve the image with bilinear interpolation until it is less than twice the target size
+// 3. draw the final step with bicubic interpolation into a new image of the target size
+// The intermediate images of step 2 are per-thread scratch buffers that are reused between calls.
+public class ImageScaler {
+    // Per-thread pair of scratch images that the halving steps ping-pong between
+    private static final ThreadLocal<BufferedImage[]> scratch = ThreadLocal.withInitial(() -> new BufferedImage[2]);
+
+    // Decode the image and scale it to exactly width x height, or return null if it cannot be decoded
+    public static BufferedImage createThumbnail(byte[] bytes, int width, int height) throws IOException {
+        BufferedImage source = decodeSubsampled(bytes, width, height);
+        return source == null ? null : scale(source, width, height);
+    }
+
+    // Decode the first image in the data, skipping source pixels when it is more than twice the target size.
+    // The result stays at least twice the target size, so the filtered scaling steps can smooth out aliasing.
+    public static BufferedImage decodeSubsampled(byte[] bytes, int width, int height) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                int subsampling = Math.max(1, Math.min(sourceWidth / (2 * width), sourceHeight / (2 * height)));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Scale the image to exactly width x height using progressive halving followed by one bicubic step
+    public static BufferedImage scale(BufferedImage source, int width, int height) {
+        boolean opaque = source.getTransparency() == Transparency.OPAQUE;
+        BufferedImage[] buffers = scratch.get();
+
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        int next = 0;
+        while (currentWidth / 2 >= width && currentHeight / 2 >= height) {
+            int stepWidth = currentWidth / 2;
+            int stepHeight = currentHeight / 2;
+            BufferedImage target = scratchBuffer(buffers, next, stepWidth, stepHeight);
+            draw(current, currentWidth, currentHeight, target, stepWidth, stepHeight,
+                    RenderingHints.VALUE_INTERPOLATION_BILINEAR, opaque);
+            current = target;
+            currentWidth = stepWidth;
+            currentHeight = stepHeight;
+            next = 1 - next;
+        }
+
+        BufferedImage result = createCompatibleImage(width, height, opaque);
+        draw(current, currentWidth, currentHeight, result, width, height,
+                RenderingHints.VALUE_INTERPOLATION_BICUBIC, opaque);
+        return result;
+    }
+
+    // Draw the top-left sourceWidth x sourceHeight region of the source onto the target, scaled
+    private static void draw(BufferedImage source, int sourceWidth, int sourceHeight, BufferedImage target,
+                             int width, int height, Object interpolation, boolean opaque) {
+        Graphics2D g = target.createGraphics();
+        try {
+            if (!opaque) {
+                // Scratch buffers keep old pixels, so clear the region before drawing translucent images
+                g.setComposite(AlphaComposite.Src);
+            }
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, 0, 0, sourceWidth, sourceHeight, null);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    // Get the scratch buffer in the given slot, replacing it if it is too small
+    private static BufferedImage scratchBuffer(BufferedImage[] buffers, int slot, int width, int height) {
+        BufferedImage buffer = buffers[slot];
+        if (buffer == null || buffer.getWidth() < width || buffer.getHeight() < height) {
+            buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            buffers[slot] = buffer;
+        }
+        return buffer;
+    }
+
+    // Create an image in the screen's preferred pixel format, so painting it needs no conversion
+    private static BufferedImage createCompatibleImage(int width, int height, boolean opaque) {
+        int transparency = opaque ? Transparency.OPAQUE : Transparency.TRANSLUCENT;
+        if (!GraphicsEnvironment.isHeadless()) {
+            GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                    .getDefaultScreenDevice().getDefaultConfiguration();
+            return config.createCompatibleImage(width, height, transparency);
+        }
+        return new BufferedImage(width, height, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+    }
+}
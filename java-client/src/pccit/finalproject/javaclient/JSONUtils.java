@@ -1,24 +1,145 @@
 package pccit.finalproject.javaclient;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
+// JSON conversion helpers. ObjectReaders and ObjectWriters are immutable and thread-safe, so one is built per
+// target type on first use and reused afterwards, instead of resolving the type on every call.
+// Decoding from bytes (byte[], ByteBuffer, InputStream) lets Jackson parse UTF-8 directly, without first
+// converting the body into a String.
 public class JSONUtils {
     private static final ObjectMapper mapper = new ObjectMapper();
+    // Same configuration, but skips the User fields the admin table never shows. Skipped values are
+    // tokenized but never turned into Strings.
+    private static final ObjectMapper summaryMapper = mapper.copy().addMixIn(User.class, UserSummary.class);
+
+    private static final ObjectWriter writer = mapper.writer();
+    private static final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectReader> listReaders = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectReader> summaryReaders = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectReader> summaryListReaders = new ConcurrentHashMap<>();
+
+    // Fields left out when decoding users for the admin table
+    @JsonIgnoreProperties({ "password", "description", "dob" })
+    private abstract static class UserSummary {
+    }
+
+    // Writer for exported users, which must never include the password hash. Only the command-line export uses
+    // it, so the mapper copy behind it is built on first use rather than with the others.
+    private static final class ExportWriter {
+        static final ObjectWriter instance = mapper.copy().addMixIn(User.class, UserExport.class).writer();
+    }
+
+    // Fields left out when writing users for export
+    @JsonIgnoreProperties({ "password" })
+    private abstract static class UserExport {
+    }
 
     public static String toJSON(Object obj) throws JsonProcessingException {
-        return mapper.writeValueAsString(obj);
+        return writer.writeValueAsString(obj);
+    }
+
+    public static byte[] toJSONBytes(Object obj) throws JsonProcessingException {
+        return writer.writeValueAsBytes(obj);
+    }
+
+    // Encode users without their password, for exports that leave the application
+    public static byte[] toExportJSONBytes(Object obj) throws JsonProcessingException {
+        return ExportWriter.instance.writeValueAsBytes(obj);
     }
 
     public static <T> T toObject(String json, Class<T> resultClass) throws JsonProcessingException {
-        return mapper.readValue(json, resultClass);
+        return readerFor(resultClass).readValue(json);
+    }
+
+    public static <T> T toObject(byte[] json, Class<T> resultClass) throws IOException {
+        return readerFor(resultClass).readValue(json);
     }
 
     public static <T> List<T> toList(String json, Class<T> resultClass) throws JsonProcessingException {
-        CollectionType listType = mapper.getTypeFactory().constructCollectionType(List.class, resultClass);
-        return mapper.readValue(json, listType);
+        return listReaderFor(resultClass, false).readValue(json);
+    }
+
+    public static <T> List<T> toList(byte[] json, Class<T> resultClass) throws IOException {
+        return toList(json, resultClass, false);
+    }
+
+    // Decode a list from UTF-8 bytes; with summary set, fields the admin table does not need are skipped
+    public static <T> List<T> toList(byte[] json, Class<T> resultClass, boolean summary) throws IOException {
+        return listReaderFor(resultClass, summary).readValue(json);
+    }
+
+    public static <T> List<T> toList(ByteBuffer json, Class<T> resultClass, boolean summary) throws IOException {
+        ObjectReader reader = listReaderFor(resultClass, summary);
+        if (json.hasArray()) {
+            return reader.readValue(json.array(), json.arrayOffset() + json.position(), json.remaining());
+        }
+        return reader.readValue(new ByteBufferBackedInputStream(json.duplicate()));
+    }
+
+    public static <T> List<T> toList(InputStream json, Class<T> resultClass, boolean summary) throws IOException {
+        return listReaderFor(resultClass, summary).readValue(json);
+    }
+
+    // Decode a top-level JSON array element by element, handing objects to the consumer in batches
+    // so the caller never needs the whole body (or the whole list) in memory at once.
+    // Returns the total number of elements decoded.
+    public static <T> int streamList(InputStream in, Class<T> resultClass, int batchSize,
+                                     Consumer<List<T>> batchConsumer) throws IOException {
+        return streamList(in, resultClass, false, batchSize, batchConsumer);
+    }
+
+    // As above; with summary set, fields the admin table does not need are skipped
+    public static <T> int streamList(InputStream in, Class<T> resultClass, boolean summary, int batchSize,
+                                     Consumer<List<T>> batchConsumer) throws IOException {
+        ObjectReader reader = summary ? summaryReaderFor(resultClass) : readerFor(resultClass);
+        int count = 0;
+        try (JsonParser parser = reader.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array but found " + parser.currentToken());
+            }
+            List<T> batch = new ArrayList<>(batchSize);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                batch.add(reader.readValue(parser));
+                count++;
+                if (batch.size() >= batchSize) {
+                    batchConsumer.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                batchConsumer.accept(batch);
+            }
+        }
+        return count;
+    }
+
+    private static ObjectReader readerFor(Class<?> type) {
+        return readers.computeIfAbsent(type, mapper::readerFor);
+    }
+
+    private static ObjectReader summaryReaderFor(Class<?> type) {
+        return summaryReaders.computeIfAbsent(type, summaryMapper::readerFor);
+    }
+
+    private static ObjectReader listReaderFor(Class<?> type, boolean summary) {
+        ObjectMapper source = summary ? summaryMapper : mapper;
+        return (summary ? summaryListReaders : listReaders).computeIfAbsent(type, key ->
+                source.readerFor(source.getTypeFactory().constructCollectionType(List.class, key)));
     }
 }
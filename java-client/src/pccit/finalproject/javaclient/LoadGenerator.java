@@ -0,0 +1,611 @@
+package pccit.finalproject.javaclient;
+
+import java.io.Console;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Load generator for capacity tests of a backend node, driving a weighted mix of the admin API calls through
+// ApiClient from many threads (virtual threads on Java 21 and later, see ApiClient.defaultExecutor()).
+//
+// Usage: LoadGenerator --username <name> [--password <password>] [--node <node>] [options]
+// The password may also be given in the NZ_ADMIN_PASSWORD environment variable, or typed at the console.
+//   --mode closed|open     closed: a fixed number of workers, each starting its next call when the last one
+//                          ends; open: calls start at a fixed arrival rate however long earlier ones take
+//                          (default closed)
+//   --rate R               Calls started per second. Required in open mode; in closed mode it paces the
+//                          workers to R in total (default: as fast as they can)
+//   --concurrency N        Workers in closed mode, or the most calls in flight in open mode (default 100 / 10000)
+//   --arrivals uniform|poisson  Spacing of the open-mode arrivals (default uniform)
+//   --mix OP=W,...         Weights of the calls (default page=65,avatar=30,login=5). Calls:
+//                          login, list (every user), page (GET /users?limit), avatar, delete
+//   --page-size N          Users per page call (default 100)
+//   --duration S           Seconds measured (default 60), after --warmup S seconds not measured (default 10)
+//   --report S             Seconds between progress lines (default 5)
+//   --allow-deletes true   Required for delete calls, which delete real users from the sampled user list
+//   --client-policies true Keep ApiClient's retries and hedging; by default every call is a single request
+//   --out <file>           Also write the results as JSON
+// The sampled users (up to 10000) supply the avatar URLs and IDs the calls use.
+//
+// Latencies are measured from when a call was meant to start rather than when it did, so a stalled server is
+// charged for the calls it held up (coordinated omission). In open mode and paced closed mode that is the
+// call's slot in the schedule. An unpaced closed loop has no schedule, so each measured latency L is also
+// recorded as L - T, L - 2T, ... for the calls that would have been sent meanwhile, where T is the mean
+// service time of the same call seen during the warmup: a login that is always slower than a page call is not
+// a stall. The extra latencies go to that call and to "all". Service times (from the actual start) are
+// reported alongside.
+// Calls rejected by the client's circuit breaker are never sent and are counted as errors of their own.
+public class LoadGenerator {
+    private static final String DEFAULT_MIX = "page=65,avatar=30,login=5";
+    private static final int SAMPLE_USERS = 10_000;
+    private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p99.9" };
+
+    // The calls the mix can contain, with the ApiClient endpoint each one sends
+    private static final Map<String, String> ENDPOINTS = Map.of(
+            "login", "POST /auth",
+            "list", "GET /users",
+            "page", "GET /users?limit",
+            "avatar", "GET avatar image",
+            "delete", "DELETE /users/{id}");
+
+    private final ApiClient apiClient;
+    private final Map<String, String> options;
+    private final Executor workers = ApiClient.defaultExecutor();
+    private final List<String> ops = new ArrayList<>();
+    private final double[] cumulativeWeights;
+    private final Map<String, OpStats> stats = new LinkedHashMap<>(); // Per call, then "all"
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder started = new LongAdder();
+
+    private String username;
+    private String password;
+    private int pageSize;
+    private List<User> sample = List.of();
+    private int maxUserId;
+    private final Queue<Integer> deletableIds = new ConcurrentLinkedQueue<>();
+
+    // Set up before the workers start and only read afterwards
+    private long warmupEndNanos;
+    private long endNanos;
+    private volatile boolean backfilling; // Whether the expected intervals of an unpaced closed loop are set
+
+    LoadGenerator(ApiClient apiClient, Map<String, String> options) {
+        this.apiClient = apiClient;
+        this.options = options;
+        Map<String, Double> mix = parseMix(options.getOrDefault("mix", DEFAULT_MIX));
+        cumulativeWeights = new double[mix.size()];
+        double total = 0;
+        for (Map.Entry<String, Double> op : mix.entrySet()) {
+            total += op.getValue();
+            cumulativeWeights[ops.size()] = total;
+            ops.add(op.getKey());
+            stats.put(op.getKey(), new OpStats());
+        }
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            cumulativeWeights[i] /= total;
+        }
+        stats.put("all", new OpStats());
+        if (mix.containsKey("delete") && !Boolean.parseBoolean(options.get("allow-deletes"))) {
+            throw new IllegalArgumentException("The mix deletes users; add --allow-deletes true to confirm");
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                usage("Invalid option: " + args[i]);
+                return;
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        ApiClientPool pool = ApiClientPool.getInstance();
+        ApiClient apiClient = options.containsKey("node") ? pool.getClient(options.get("node")) : pool.getDefault();
+        if (apiClient == null) {
+            usage("Unknown node: " + options.get("node") + "; configured nodes are " + pool.getClients());
+            return;
+        }
+        int status;
+        try {
+            LoadGenerator generator = new LoadGenerator(apiClient, options);
+            generator.prepare();
+            generator.run();
+            status = generator.report();
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+            return;
+        } catch (Exception e) {
+            System.err.println("Failed: " + describe(e));
+            status = 1;
+        }
+        System.exit(status);
+    }
+
+    // Log in, apply the request policies and sample the users the calls will use
+    void prepare() {
+        username = required("username");
+        password = options.get("password");
+        if (password == null) {
+            password = System.getenv("NZ_ADMIN_PASSWORD");
+        }
+        if (password == null) {
+            Console console = System.console();
+            if (console == null) {
+                throw new IllegalArgumentException("No password given");
+            }
+            password = new String(console.readPassword("Password for %s: ", username));
+        }
+        pageSize = (int) number("page-size", 100);
+        if (!Boolean.parseBoolean(options.get("client-policies"))) {
+            // Measure the server, not the client's recovery: one attempt per call, never hedged
+            for (String endpoint : ENDPOINTS.values()) {
+                EndpointPolicy policy = apiClient.getPolicy(endpoint);
+                apiClient.setPolicy(endpoint, new EndpointPolicy(policy.getAttemptTimeout(), policy.getDeadline(),
+                        1, policy.isIdempotent(), 0));
+            }
+        }
+        apiClient.loginAsync(username, password).join();
+
+        List<User> users = new ArrayList<>();
+        Iterator<User> iterator = apiClient.userIterator(ApiClient.MAX_PAGE_SIZE);
+        while (users.size() < SAMPLE_USERS && iterator.hasNext()) {
+            User user = iterator.next();
+            users.add(user);
+            maxUserId = Math.max(maxUserId, user.getId());
+        }
+        if (users.isEmpty() && (ops.contains("avatar") || ops.contains("delete"))) {
+            throw new IllegalArgumentException("The node has no users for the avatar or delete calls");
+        }
+        sample = users;
+        List<Integer> ids = new ArrayList<>();
+        for (User user : users) {
+            if (!user.getUsername().equals(username)) {
+                ids.add(user.getId());
+            }
+        }
+        Collections.shuffle(ids);
+        deletableIds.addAll(ids);
+        System.out.printf("Logged in to %s, sampled %d users%n", apiClient, users.size());
+    }
+
+    // Drive the load for the warmup and the measured duration, then wait for the calls still in flight
+    void run() throws InterruptedException {
+        String mode = options.getOrDefault("mode", "closed");
+        double rate = number("rate", 0);
+        long warmupNanos = TimeUnit.MILLISECONDS.toNanos((long) (number("warmup", 10) * 1000));
+        long durationNanos = TimeUnit.MILLISECONDS.toNanos((long) (number("duration", 60) * 1000));
+        long startNanos = System.nanoTime();
+        warmupEndNanos = startNanos + warmupNanos;
+        endNanos = warmupEndNanos + durationNanos;
+        Thread progress = startProgress(startNanos);
+        System.out.printf("%s loop, %s, mix %s, %.0f s warmup then %.0f s measured%n", mode,
+                rate > 0 ? rate + " calls/s" : "unpaced", options.getOrDefault("mix", DEFAULT_MIX),
+                warmupNanos / 1e9, durationNanos / 1e9);
+        if (mode.equals("open")) {
+            if (rate <= 0) {
+                throw new IllegalArgumentException("Open mode needs --rate");
+            }
+            runOpen(rate, (int) number("concurrency", 10_000), startNanos);
+        } else if (mode.equals("closed")) {
+            runClosed((int) number("concurrency", 100), rate, startNanos);
+        } else {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        progress.interrupt();
+    }
+
+    // Start calls on the arrival schedule. A call that cannot start because the in-flight limit is reached
+    // waits for a slot, and the wait counts towards its latency.
+    private void runOpen(double rate, int maxInFlight, long startNanos) throws InterruptedException {
+        boolean poisson = options.getOrDefault("arrivals", "uniform").equals("poisson");
+        if (!poisson && !options.getOrDefault("arrivals", "uniform").equals("uniform")) {
+            throw new IllegalArgumentException("Unknown arrivals: " + options.get("arrivals"));
+        }
+        Semaphore slots = new Semaphore(maxInFlight);
+        double intervalNanos = 1e9 / rate;
+        double next = startNanos;
+        while (next < endNanos) {
+            long intended = (long) next;
+            parkUntil(intended);
+            slots.acquire();
+            workers.execute(() -> {
+                try {
+                    call(intended);
+                } finally {
+                    slots.release();
+                }
+            });
+            next += poisson ? -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * intervalNanos
+                    : intervalNanos;
+        }
+        slots.acquire(maxInFlight); // Every call has ended
+    }
+
+    // Run the workers until the end. Paced workers each follow a schedule of their own, spread over one
+    // interval so they do not start together.
+    private void runClosed(int concurrency, double rate, long startNanos) throws InterruptedException {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("--concurrency must be at least 1");
+        }
+        double intervalNanos = rate > 0 ? 1e9 * concurrency / rate : 0;
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int worker = 0; worker < concurrency; worker++) {
+            double offset = intervalNanos * worker / concurrency;
+            workers.execute(() -> {
+                try {
+                    double next = startNanos + offset;
+                    while (System.nanoTime() < endNanos) {
+                        long intended;
+                        if (intervalNanos > 0) {
+                            intended = (long) next;
+                            if (intended >= endNanos) {
+                                break;
+                            }
+                            parkUntil(intended);
+                            next += intervalNanos;
+                        } else {
+                            intended = System.nanoTime();
+                        }
+                        call(intended);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        if (intervalNanos == 0) {
+            // Take the mean service time of each call in the warmup as the interval at which it would have been
+            // sent again
+            parkUntil(warmupEndNanos);
+            for (String op : ops) {
+                stats.get(op).setExpectedInterval();
+            }
+            backfilling = true;
+        }
+        done.await();
+    }
+
+    // Make one call of the mix, meant to start at the given time, and record its outcome
+    private void call(long intendedNanos) {
+        String op = pickOp();
+        long startNanos = System.nanoTime();
+        inFlight.incrementAndGet();
+        started.increment();
+        Throwable error = null;
+        try {
+            perform(op);
+        } catch (RuntimeException e) {
+            error = e;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        long finishedNanos = System.nanoTime();
+        OpStats opStats = stats.get(op);
+        if (intendedNanos < warmupEndNanos) {
+            opStats.warmupServiceNanos.add(finishedNanos - startNanos);
+            opStats.warmupCalls.increment();
+            return;
+        }
+        if (intendedNanos >= endNanos) {
+            return;
+        }
+        long interval = backfilling ? opStats.expectedIntervalNanos : 0;
+        for (OpStats target : List.of(opStats, stats.get("all"))) {
+            target.record(finishedNanos - intendedNanos, finishedNanos - startNanos, interval, error);
+        }
+    }
+
+    private void perform(String op) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        switch (op) {
+            case "login":
+                apiClient.loginAsync(username, password).join();
+                break;
+            case "list":
+                apiClient.streamUsersAsync(ApiClient.USER_BATCH_SIZE, batch -> { }).join();
+                break;
+            case "page":
+                apiClient.getUsersPageAsync(maxUserId > 0 ? random.nextInt(maxUserId) : 0, pageSize).join();
+                break;
+            case "avatar":
+                User user = sample.get(random.nextInt(sample.size()));
+                String avatarUrl = user.getAvatar_url() != null ? user.getAvatar_url() : "/images/default.png";
+                apiClient.getAvatarImageAsync(avatarUrl, null, null).join();
+                break;
+            case "delete":
+                Integer id = deletableIds.poll();
+                if (id == null) {
+                    throw new IllegalStateException("No sampled users left to delete");
+                }
+                apiClient.deleteUserByIdAsync(id).join();
+                break;
+            default:
+                throw new IllegalStateException("Unknown call: " + op);
+        }
+    }
+
+    private String pickOp() {
+        double point = ThreadLocalRandom.current().nextDouble();
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (point < cumulativeWeights[i]) {
+                return ops.get(i);
+            }
+        }
+        return ops.get(ops.size() - 1);
+    }
+
+    // Print the calls started, in flight and failed every --report seconds
+    private Thread startProgress(long startNanos) {
+        long periodMillis = (long) (number("report", 5) * 1000);
+        Thread thread = new Thread(() -> {
+            long lastStarted = 0;
+            try {
+                while (true) {
+                    Thread.sleep(periodMillis);
+                    long now = System.nanoTime();
+                    long total = started.sum();
+                    OpStats all = stats.get("all");
+                    System.out.printf("%6.1f s %s: %.1f calls/s started, %d in flight, %d measured, %d failed,"
+                                    + " p99 %.1f ms%n", (now - startNanos) / 1e9,
+                            now < warmupEndNanos ? "warmup" : "measuring",
+                            (total - lastStarted) * 1000.0 / periodMillis, inFlight.get(), all.calls.sum(),
+                            all.failed(), all.response.getPercentileMillis(0.99));
+                    lastStarted = total;
+                }
+            } catch (InterruptedException e) {
+                // The run has ended
+            }
+        }, "load-progress");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    // Print the results, write them to --out if given, and return the exit status: 1 if any call failed
+    int report() throws IOException {
+        double seconds = (endNanos - warmupEndNanos) / 1e9;
+        System.out.println();
+        System.out.printf("%-11s %9s %8s %9s  %-44s  %-17s%n", "", "", "", "",
+                "response time ms (from intended start)", "service time ms");
+        System.out.printf("%-11s %9s %8s %9s  %8s %8s %8s %8s %8s  %8s %8s%n", "call", "calls", "failed",
+                "calls/s", "p50", "p90", "p99", "p99.9", "max", "p50", "p99");
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (Map.Entry<String, OpStats> entry : stats.entrySet()) {
+            OpStats op = entry.getValue();
+            LatencyHistogram response = op.response;
+            System.out.printf("%-11s %9d %8d %9.1f  %8.1f %8.1f %8.1f %8.1f %8.1f  %8.1f %8.1f%n", entry.getKey(),
+                    op.calls.sum(), op.failed(), op.calls.sum() / seconds, response.getPercentileMillis(0.5),
+                    response.getPercentileMillis(0.9), response.getPercentileMillis(0.99),
+                    response.getPercentileMillis(0.999), response.getMaxMillis(),
+                    op.service.getPercentileMillis(0.5), op.service.getPercentileMillis(0.99));
+            results.put(entry.getKey(), op.toMap(seconds));
+        }
+        double rate = number("rate", 0);
+        if (rate > 0) {
+            System.out.printf("Target %.1f calls/s, achieved %.1f calls/s%n", rate,
+                    stats.get("all").calls.sum() / seconds);
+        }
+        Map<String, Long> errors = stats.get("all").errorCounts();
+        if (!errors.isEmpty()) {
+            System.out.println("Errors: " + errors);
+        }
+        Map<String, Double> expectedIntervals = new LinkedHashMap<>();
+        List<String> uncorrected = new ArrayList<>();
+        if (backfilling) {
+            for (String op : ops) {
+                long interval = stats.get(op).expectedIntervalNanos;
+                if (interval > 0) {
+                    expectedIntervals.put(op, interval / 1e6);
+                } else {
+                    uncorrected.add(op);
+                }
+            }
+        }
+        if (stats.get("all").backfilled.sum() > 0) {
+            StringBuilder intervals = new StringBuilder();
+            for (Map.Entry<String, Double> interval : expectedIntervals.entrySet()) {
+                intervals.append(intervals.length() > 0 ? ", " : "")
+                        .append(String.format("%s %.1f ms", interval.getKey(), interval.getValue()));
+            }
+            System.out.printf("%d latencies were backfilled at each call's expected interval (%s)%n",
+                    stats.get("all").backfilled.sum(), intervals);
+        }
+        if (!uncorrected.isEmpty()) {
+            System.out.println("No warmup calls to derive an expected interval from for " + uncorrected
+                    + "; their latencies are not corrected");
+        }
+
+        String out = options.get("out");
+        if (out != null) {
+            Map<String, Object> document = new LinkedHashMap<>();
+            document.put("node", apiClient.getNode());
+            document.put("serverUrl", apiClient.getServerUrl());
+            document.put("options", new TreeMap<>(withoutPassword(options)));
+            document.put("measuredSeconds", seconds);
+            document.put("expectedIntervalMillis", expectedIntervals);
+            document.put("calls", results);
+            Files.write(Paths.get(out), JSONUtils.toJSONBytes(document));
+        }
+        return stats.get("all").failed() > 0 ? 1 : 0;
+    }
+
+    // Sleep until the given System.nanoTime() value
+    private static void parkUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    // Parse "op=weight,op=weight" into weights by call, in the order given
+    static Map<String, Double> parseMix(String spec) {
+        Map<String, Double> mix = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2 || !ENDPOINTS.containsKey(parts[0].trim())) {
+                throw new IllegalArgumentException("Invalid mix entry: " + entry + "; calls are "
+                        + new TreeMap<>(ENDPOINTS).keySet());
+            }
+            double weight = Double.parseDouble(parts[1].trim());
+            if (weight > 0) {
+                mix.put(parts[0].trim(), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no calls");
+        }
+        return mix;
+    }
+
+    private static Map<String, String> withoutPassword(Map<String, String> options) {
+        Map<String, String> copy = new HashMap<>(options);
+        copy.remove("password");
+        return copy;
+    }
+
+    private String required(String name) {
+        String value = options.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing --" + name);
+        }
+        return value;
+    }
+
+    private double number(String name, double defaultValue) {
+        String value = options.get(name);
+        try {
+            return value == null ? defaultValue : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a number");
+        }
+    }
+
+    private static String describe(Throwable error) {
+        while (error.getCause() != null && !(error instanceof ApiException)) {
+            error = error.getCause();
+        }
+        return error.getMessage();
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: LoadGenerator --username <name> [--password <password>] [--node <node>]"
+                + " [options]");
+        System.err.println("  --mode closed|open  --rate calls-per-second  --concurrency N"
+                + "  --arrivals uniform|poisson");
+        System.err.println("  --mix " + DEFAULT_MIX + "  (calls: " + new TreeMap<>(ENDPOINTS).keySet() + ")");
+        System.err.println("  --page-size N  --duration S  --warmup S  --report S  --out results.json");
+        System.err.println("  --allow-deletes true  --client-policies true");
+        System.exit(2);
+    }
+
+    // Outcome counts and latency histograms of one call in the mix
+    private static class OpStats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder backfilled = new LongAdder();
+        final LatencyHistogram response = new LatencyHistogram(); // From the intended start
+        final LatencyHistogram service = new LatencyHistogram(); // From the actual start
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        final LongAdder warmupCalls = new LongAdder();
+        final LongAdder warmupServiceNanos = new LongAdder();
+        volatile long expectedIntervalNanos; // Mean warmup service time, 0 if the call was not made in the warmup
+
+        void setExpectedInterval() {
+            long count = warmupCalls.sum();
+            expectedIntervalNanos = count > 0 ? warmupServiceNanos.sum() / count : 0;
+        }
+
+        // Record a measured call; a backfill interval above 0 also records the calls a closed loop would have
+        // sent at that interval while this one was stalled
+        void record(long responseNanos, long serviceNanos, long intervalNanos, Throwable error) {
+            calls.increment();
+            response.record(responseNanos, TimeUnit.NANOSECONDS);
+            service.record(serviceNanos, TimeUnit.NANOSECONDS);
+            if (intervalNanos > 0) {
+                for (long missed = responseNanos - intervalNanos; missed >= intervalNanos; missed -= intervalNanos) {
+                    response.record(missed, TimeUnit.NANOSECONDS);
+                    backfilled.increment();
+                }
+            }
+            if (error != null) {
+                errors.computeIfAbsent(errorClass(error), key -> new LongAdder()).increment();
+            }
+        }
+
+        long failed() {
+            long failed = 0;
+            for (LongAdder count : errors.values()) {
+                failed += count.sum();
+            }
+            return failed;
+        }
+
+        Map<String, Long> errorCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            for (Map.Entry<String, LongAdder> error : errors.entrySet()) {
+                counts.put(error.getKey(), error.getValue().sum());
+            }
+            return counts;
+        }
+
+        Map<String, Object> toMap(double seconds) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("calls", calls.sum());
+            map.put("failed", failed());
+            map.put("callsPerSecond", calls.sum() / seconds);
+            map.put("errors", errorCounts());
+            map.put("backfilled", backfilled.sum());
+            map.put("responseMillis", percentiles(response));
+            map.put("serviceMillis", percentiles(service));
+            return map;
+        }
+
+        private static Map<String, Double> percentiles(LatencyHistogram histogram) {
+            Map<String, Double> map = new LinkedHashMap<>();
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                map.put(PERCENTILE_NAMES[i], histogram.getPercentileMillis(PERCENTILES[i]));
+            }
+            map.put("max", histogram.getMaxMillis());
+            map.put("mean", histogram.getMeanMillis());
+            return map;
+        }
+
+        // Group errors by kind, with the status code for HTTP errors, e.g. "HTTP_STATUS 503" or "TIMEOUT"
+        private static String errorClass(Throwable error) {
+            Throwable cause = error;
+            while ((cause instanceof CompletionException || cause instanceof CancellationException)
+                    && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof ApiException) {
+                ApiException apiError = (ApiException) cause;
+                return apiError.getKind() == ApiException.Kind.HTTP_STATUS
+                        ? "HTTP_STATUS " + apiError.getStatusCode() : apiError.getKind().name();
+            }
+            return cause.getClass().getSimpleName();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package pccit.finalproject.javaclient;
+
+import java.io.PrintStream;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+// Minimal leveled logger writing to standard error.
+// The level is read once from the nzdiscovery.log system property (ERROR, WARN, INFO or DEBUG; INFO by default).
+// Disabled calls cost a single comparison: the fixed-arity overloads take their arguments as they are,
+// so nothing is formatted, concatenated or allocated into a varargs array unless the line is written.
+// Formats use String.format syntax.
+public final class Log {
+    public enum Level { ERROR, WARN, INFO, DEBUG }
+
+    private static volatile Level threshold = parseLevel(System.getProperty("nzdiscovery.log"));
+
+    private final String name;
+
+    private Log(String name) {
+        this.name = name;
+    }
+
+    public static Log get(Class<?> type) {
+        return new Log(type.getSimpleName());
+    }
+
+    // Change the level at runtime, e.g. from a debugging session
+    public static void setLevel(Level level) {
+        threshold = level;
+    }
+
+    public static Level getLevel() {
+        return threshold;
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(threshold) <= 0;
+    }
+
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    public void debug(String message) {
+        if (isEnabled(Level.DEBUG)) {
+            write(Level.DEBUG, message, null);
+        }
+    }
+
+    public void debug(String format, Object arg) {
+        if (isEnabled(Level.DEBUG)) {
+            write(Level.DEBUG, String.format(format, arg), null);
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) {
+            write(Level.DEBUG, String.format(format, arg1, arg2), null);
+        }
+    }
+
+    public void debug(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.DEBUG)) {
+            write(Level.DEBUG, String.format(format, arg1, arg2, arg3), null);
+        }
+    }
+
+    public void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            write(Level.INFO, message, null);
+        }
+    }
+
+    public void info(String format, Object arg) {
+        if (isEnabled(Level.INFO)) {
+            write(Level.INFO, String.format(format, arg), null);
+        }
+    }
+
+    public void info(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) {
+            write(Level.INFO, String.format(format, arg1, arg2), null);
+        }
+    }
+
+    public void info(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.INFO)) {
+            write(Level.INFO, String.format(format, arg1, arg2, arg3), null);
+        }
+    }
+
+    public void warn(String message) {
+        if (isEnabled(Level.WARN)) {
+            write(Level.WARN, message, null);
+        }
+    }
+
+    public void warn(String message, Throwable error) {
+        if (isEnabled(Level.WARN)) {
+            write(Level.WARN, message, error);
+        }
+    }
+
+    public void warn(String format, Object arg) {
+        if (isEnabled(Level.WARN)) {
+            write(Level.WARN, String.format(format, arg), null);
+        }
+    }
+
+    public void warn(String format, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN)) {
+            write(Level.WARN, String.format(format, arg1, arg2), null);
+        }
+    }
+
+    public void warn(String format, Object arg1, Object arg2, Object arg3) {
+        if (isEnabled(Level.WARN)) {
+            write(Level.WARN, String.format(format, arg1, arg2, arg3), null);
+        }
+    }
+
+    public void error(String message, Throwable error) {
+        if (isEnabled(Level.ERROR)) {
+            write(Level.ERROR, message, error);
+        }
+    }
+
+    private void write(Level level, String message, Throwable error) {
+        PrintStream out = System.err;
+        String line = LocalTime.now().truncatedTo(ChronoUnit.MILLIS) + " " + level
+                + " [" + Thread.currentThread().getName() + "] " + name + ": " + message;
+        synchronized (out) {
+            out.println(line);
+            if (error != null) {
+                error.printStackTrace(out);
+            }
+        }
+    }
+
+    private static Level parseLevel(String value) {
+        if (value == null) {
+            return Level.INFO;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return Level.INFO;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package pccit.finalproject.javaclient;
+
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// One call to an endpoint, sent under the endpoint's EndpointPolicy and the backend's CircuitBreaker:
+// - Failed requests are retried after an exponential backoff with full jitter (a random delay between 0 and
+//   100 ms, 200 ms, 400 ms, ... up to 2 s), or after the server's Retry-After if that is longer. Network
+//   failures and 429/502/503/504 responses are retried for idempotent calls; other calls are only retried
+//   when the connection could not be made.
+// - A hedged call sends a second request once the first has been outstanding for longer than the chosen
+//   latency percentile of the endpoint. The first good response wins and the other request is cancelled.
+// - The whole call fails with a TIMEOUT ApiException once its deadline has passed, cancelling whatever
+//   is still in flight; no retry is started that could not begin before the deadline.
+// - While the circuit breaker is open, the call fails at once with a CIRCUIT_OPEN ApiException.
+// If every attempt fails, the call completes like its last request: with its error, or with its response
+// so the caller can report the status code.
+class ResilientCall<T> {
+    private static final Log log = Log.get(ResilientCall.class);
+    private static final long BASE_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 2000;
+    private static final long MIN_HEDGE_SAMPLES = 20; // Latencies needed before the percentile is trusted
+    private static final long MIN_HEDGE_DELAY_MILLIS = 10;
+    // Runs the deadline timers of every call. A call cancels its timer as soon as it completes, and cancelled
+    // timers leave the queue at once, so fast calls do not pile up timers that wait out their whole deadline.
+    private static final ScheduledThreadPoolExecutor deadlineTimers =
+            new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "api-deadlines");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    static {
+        deadlineTimers.setRemoveOnCancelPolicy(true);
+    }
+
+    private final String endpoint;
+    private final EndpointPolicy policy;
+    private final EndpointMetrics metrics;
+    private final CircuitBreaker breaker;
+    private final HttpRequest request;
+    private final Function<HttpRequest, CompletableFuture<HttpResponse<T>>> sender;
+    private final Executor executor;
+    private final CancellableFuture<HttpResponse<T>> result = new CancellableFuture<>(this::cancelAttempts);
+
+    // Guarded by this
+    private final List<CompletableFuture<HttpResponse<T>>> inFlight = new ArrayList<>(2);
+    private CompletableFuture<HttpResponse<T>> hedge;
+    private int attempts;
+    private Throwable lastError;
+    private long startedAt;
+    private long deadlineAt;
+
+    ResilientCall(String endpoint, EndpointPolicy policy, EndpointMetrics metrics, CircuitBreaker breaker,
+                  HttpRequest request, Function<HttpRequest, CompletableFuture<HttpResponse<T>>> sender,
+                  Executor executor) {
+        this.endpoint = endpoint;
+        this.policy = policy;
+        this.metrics = metrics;
+        this.breaker = breaker;
+        this.request = request;
+        this.sender = sender;
+        this.executor = executor;
+    }
+
+    // Send the first request. Cancelling the returned future cancels every request in flight.
+    CompletableFuture<HttpResponse<T>> start() {
+        long deadlineMillis = policy.getDeadline().toMillis();
+        synchronized (this) {
+            startedAt = System.nanoTime();
+            deadlineAt = startedAt + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+        }
+        ScheduledFuture<?> expiry = scheduleDeadline(() -> executor.execute(this::expire), deadlineMillis);
+        result.whenComplete((response, error) -> expiry.cancel(false));
+        attempt(false);
+        if (policy.isHedged() && "GET".equals(request.method()) && metrics.getRequestCount() >= MIN_HEDGE_SAMPLES) {
+            long delay = Math.max((long) metrics.getLatencyPercentileMillis(policy.getHedgePercentile()),
+                    MIN_HEDGE_DELAY_MILLIS);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor).execute(() -> attempt(true));
+        }
+        return result;
+    }
+
+    // Send a request, unless the call has finished. A hedge is only sent while the first request is the only
+    // one in flight, and is skipped if the circuit breaker refuses it.
+    private void attempt(boolean isHedge) {
+        CompletableFuture<HttpResponse<T>> sent;
+        synchronized (this) {
+            if (result.isDone() || isHedge && (attempts != 1 || inFlight.size() != 1)) {
+                return;
+            }
+            if (breaker.tryAcquire()) {
+                attempts++;
+                if (isHedge) {
+                    metrics.recordHedge();
+                    log.debug("Hedging %s after %d ms", endpoint, (System.nanoTime() - startedAt) / 1_000_000);
+                }
+                sent = sender.apply(request);
+                inFlight.add(sent);
+                if (isHedge) {
+                    hedge = sent;
+                }
+            } else if (isHedge) {
+                return;
+            } else {
+                sent = null;
+            }
+        }
+        if (sent == null) {
+            metrics.recordRejected();
+            result.completeExceptionally(new ApiException(ApiException.Kind.CIRCUIT_OPEN,
+                    endpoint + " not sent: the backend is failing", -1, getLastError()));
+            return;
+        }
+        sent.whenComplete((response, error) -> onAttemptDone(sent, response, error));
+    }
+
+    private void onAttemptDone(CompletableFuture<HttpResponse<T>> sent, HttpResponse<T> response, Throwable error) {
+        boolean failure = error != null || response.statusCode() >= 500;
+        if (error != null && isCancellation(error)) {
+            breaker.onAbandoned();
+        } else if (failure) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
+        }
+
+        List<CompletableFuture<HttpResponse<T>>> losers;
+        synchronized (this) {
+            if (!inFlight.remove(sent) || result.isDone()) {
+                discard(response); // Lost the race, or the call was cancelled or timed out
+                return;
+            }
+            if (failure) {
+                lastError = error != null ? error : lastError;
+                if (!inFlight.isEmpty()) {
+                    discard(response); // The other hedged request may still succeed
+                    return;
+                }
+                long delay = retryDelay(response, error);
+                if (delay >= 0) {
+                    discard(response);
+                    metrics.recordRetry();
+                    log.debug("Retrying %s in %d ms after attempt %d failed", endpoint, delay, attempts);
+                    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor)
+                            .execute(() -> attempt(false));
+                    return;
+                }
+            } else if (sent == hedge) {
+                metrics.recordHedgeWin();
+            }
+            losers = new ArrayList<>(inFlight);
+            inFlight.clear();
+        }
+        if (error != null) {
+            result.completeExceptionally(error);
+        } else {
+            result.complete(response);
+        }
+        for (CompletableFuture<HttpResponse<T>> loser : losers) {
+            loser.cancel(true);
+        }
+    }
+
+    // Get the delay before the next attempt, or -1 if the call should not be retried
+    private long retryDelay(HttpResponse<T> response, Throwable error) {
+        if (attempts >= policy.getMaxAttempts()) {
+            return -1;
+        }
+        boolean retryable;
+        if (error != null) {
+            retryable = !isCancellation(error) && (policy.isIdempotent() || neverSent(error));
+        } else {
+            int status = response.statusCode();
+            retryable = policy.isIdempotent() && (status == 429 || status == 502 || status == 503 || status == 504);
+        }
+        if (!retryable) {
+            return -1;
+        }
+        long cap = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempts - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+        if (response != null) {
+            delay = Math.max(delay, retryAfterMillis(response));
+        }
+        if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay) >= deadlineAt) {
+            return -1; // The next attempt could not start before the deadline
+        }
+        return delay;
+    }
+
+    // Run a task on the deadline timer thread once the delay has passed; the task should only hand work off.
+    // Cancel the returned future once the deadline no longer matters.
+    static ScheduledFuture<?> scheduleDeadline(Runnable task, long delayMillis) {
+        return deadlineTimers.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Get the number of deadline timers still waiting
+    static int pendingDeadlines() {
+        return deadlineTimers.getQueue().size();
+    }
+
+    private synchronized Throwable getLastError() {
+        return lastError;
+    }
+
+    // Fail the call if it is still running when its deadline passes
+    private void expire() {
+        List<CompletableFuture<HttpResponse<T>>> abandoned;
+        int sentAttempts;
+        Throwable cause;
+        synchronized (this) {
+            if (result.isDone()) {
+                return;
+            }
+            abandoned = new ArrayList<>(inFlight);
+            inFlight.clear();
+            sentAttempts = attempts;
+            cause = lastError;
+        }
+        metrics.recordDeadlineExceeded();
+        result.completeExceptionally(new ApiException(ApiException.Kind.TIMEOUT, endpoint + " did not complete within "
+                + policy.getDeadline().toMillis() + " ms (" + sentAttempts + " attempts)", -1, cause));
+        for (CompletableFuture<HttpResponse<T>> attempt : abandoned) {
+            attempt.cancel(true);
+        }
+    }
+
+    // Cancel the requests in flight when the caller cancels the call
+    private void cancelAttempts() {
+        List<CompletableFuture<HttpResponse<T>>> abandoned;
+        synchronized (this) {
+            abandoned = new ArrayList<>(inFlight);
+            inFlight.clear();
+        }
+        for (CompletableFuture<HttpResponse<T>> attempt : abandoned) {
+            attempt.cancel(true);
+        }
+    }
+
+    private static void discard(HttpResponse<?> response) {
+        if (response != null) {
+            ApiClient.discardBody(response);
+        }
+    }
+
+    // Whether the request failed before a connection was made, so the server cannot have seen it
+    private static boolean neverSent(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isCancellation(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CancellationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Read a Retry-After header given in seconds; 0 if there is none or it is a date
+    private static long retryAfterMillis(HttpResponse<?> response) {
+        String value = response.headers().firstValue("Retry-After").orElse(null);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package pccit.finalproject.javaclient;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+// Sets up the subsystems the admin client is slow to initialize the first time, on a background thread while
+// the window is being built, so the first login, load and thumbnail do not pay for it:
+// - the backend clients and their HttpClients (the HTTP stack and the default SSL context)
+// - the image readers and the thumbnail path of ImageScaler
+// - Jackson's mappers and its User (de)serializers
+// Each step is the same first call the client would otherwise make later, so whatever is still running when
+// the user gets there is simply waited for by the JVM's class and lazy initialization, never done twice.
+// A step that fails is logged and skipped; the real call reports the problem where the user can see it.
+final class StartupPrewarm {
+    private static final Log log = Log.get(StartupPrewarm.class);
+    private static final byte[] SAMPLE_USERS = ("[{\"id\":1,\"username\":\"prewarm\",\"password\":\"x\","
+            + "\"realname\":\"Prewarm\",\"role\":\"user\",\"avatar_url\":\"/images/prewarm.png\","
+            + "\"create_date\":\"2024-01-01\",\"description\":\"\",\"dob\":\"2000-01-01\"}]")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    private StartupPrewarm() {
+    }
+
+    // Start prewarming on a daemon thread. The returned future completes once every step has run.
+    static CompletableFuture<Void> start() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            run();
+            done.complete(null);
+        }, "startup-prewarm");
+        thread.setDaemon(true);
+        thread.start();
+        return done;
+    }
+
+    // Run every step on the calling thread, in the order the client first needs them: thumbnails for the
+    // snapshot rows are fetched before anyone can log in
+    static void run() {
+        step("HTTP clients", () -> {
+            for (ApiClient client : ApiClientPool.getInstance().getClients()) {
+                client.httpClient();
+            }
+        });
+        step("image decoding", StartupPrewarm::decodeSampleImage);
+        step("JSON", StartupPrewarm::decodeSampleUsers);
+    }
+
+    private static void step(String name, Step step) {
+        long started = System.nanoTime();
+        try {
+            step.run();
+            log.debug("Prewarm: %s ready in %d ms", name, (System.nanoTime() - started) / 1_000_000);
+        } catch (Exception e) {
+            log.warn("Prewarm of " + name + " failed", e);
+        }
+    }
+
+    private static void decodeSampleImage() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB), "png", png);
+        ImageScaler.createThumbnail(png.toByteArray(), 1, 1);
+    }
+
+    // Decode the sample the ways the client does: streamed in full and for the table, and as a single
+    // pushed change; then encode it, as the login request does
+    private static void decodeSampleUsers() throws IOException {
+        JSONUtils.streamList(new ByteArrayInputStream(SAMPLE_USERS), User.class, 1, batch -> { });
+        JSONUtils.streamList(new ByteArrayInputStream(SAMPLE_USERS), User.class, true, 1, batch -> { });
+        User user = JSONUtils.toList(SAMPLE_USERS, User.class).get(0);
+        JSONUtils.toObject(JSONUtils.toJSONBytes(user), User.class);
+    }
+}
@@ -0,0 +1,94 @@
+package pccit.finalproject.javaclient;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+
+// Times the admin client's startup from JVM start to when the user can log in, logged as one line:
+//   Startup: main 160 ms, window built 540 ms, first frame 720 ms, prewarm done 980 ms, login-ready 980 ms
+//   after JVM start (class data sharing: JDK and application classes, target/nz-discovery.jsa)
+// Login-ready is the later of the first frame and the end of StartupPrewarm. Without a display only the
+// prewarm runs, and the window phases are left out.
+// With -Dnzdiscovery.startup.exitWhenReady=true the JVM exits once the line is logged, for timing startup from
+// a script and for the class data sharing training run (see README).
+final class StartupReport {
+    private static final Log log = Log.get(StartupReport.class);
+    static final boolean EXIT_WHEN_READY = Boolean.getBoolean("nzdiscovery.startup.exitWhenReady");
+
+    // Milliseconds since the epoch, 0 until the phase is reached
+    private static long mainAt;
+    private static long windowBuiltAt;
+    private static volatile long firstFrameAt;
+    private static long prewarmDoneAt;
+    private static boolean windowless;
+    private static boolean reported;
+
+    private StartupReport() {
+    }
+
+    static synchronized void mainEntered() {
+        mainAt = System.currentTimeMillis();
+    }
+
+    static synchronized void windowBuilt() {
+        windowBuiltAt = System.currentTimeMillis();
+    }
+
+    // Called on every paint of the window; only the first one counts
+    static void framePainted() {
+        if (firstFrameAt == 0) {
+            synchronized (StartupReport.class) {
+                if (firstFrameAt == 0) {
+                    firstFrameAt = System.currentTimeMillis();
+                    reportIfReady();
+                }
+            }
+        }
+    }
+
+    // There is no display, so the client will be ready as soon as the prewarm is
+    static synchronized void noWindow() {
+        windowless = true;
+        reportIfReady();
+    }
+
+    static synchronized void prewarmDone() {
+        prewarmDoneAt = System.currentTimeMillis();
+        reportIfReady();
+    }
+
+    private static void reportIfReady() {
+        if (reported || prewarmDoneAt == 0 || (firstFrameAt == 0 && !windowless)) {
+            return;
+        }
+        reported = true;
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        StringBuilder line = new StringBuilder("Startup: main ").append(mainAt - jvmStart).append(" ms");
+        if (!windowless) {
+            line.append(", window built ").append(windowBuiltAt - jvmStart).append(" ms");
+            line.append(", first frame ").append(firstFrameAt - jvmStart).append(" ms");
+        }
+        line.append(", prewarm done ").append(prewarmDoneAt - jvmStart).append(" ms");
+        line.append(", login-ready ").append(Math.max(firstFrameAt, prewarmDoneAt) - jvmStart).append(" ms");
+        log.info("%s after JVM start (class data sharing: %s)", line, classDataSharing());
+        if (EXIT_WHEN_READY) {
+            // Exit on a thread of its own rather than inside a paint: writing a class data sharing archive at
+            // exit takes a while, and the EDT watchdog would report that as a stall
+            new Thread(() -> System.exit(0), "startup-exit").start();
+        }
+    }
+
+    // Describe which class data sharing archive the JVM mapped, if any
+    private static String classDataSharing() {
+        try {
+            HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            if (!Boolean.parseBoolean(hotSpot.getVMOption("UseSharedSpaces").getValue())) {
+                return "off";
+            }
+            String archive = hotSpot.getVMOption("SharedArchiveFile").getValue();
+            return archive.isEmpty() ? "JDK classes only" : "JDK and application classes, " + archive;
+        } catch (RuntimeException e) {
+            return "unknown";
+        }
+    }
+}
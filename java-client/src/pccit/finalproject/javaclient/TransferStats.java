@@ -0,0 +1,55 @@
+package pccit.finalproject.javaclient;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Bytes received by one endpoint, before (wire) and after (decoded) content decoding
+public class TransferStats {
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder compressedResponses = new LongAdder();
+    private final LongAdder wireBytes = new LongAdder();
+    private final LongAdder decodedBytes = new LongAdder();
+
+    // Record one response body that has been read to the end or closed
+    void record(boolean compressed, long wire, long decoded) {
+        responses.increment();
+        if (compressed) {
+            compressedResponses.increment();
+        }
+        wireBytes.add(wire);
+        decodedBytes.add(decoded);
+    }
+
+    public long getResponses() {
+        return responses.sum();
+    }
+
+    public long getCompressedResponses() {
+        return compressedResponses.sum();
+    }
+
+    public long getWireBytes() {
+        return wireBytes.sum();
+    }
+
+    public long getDecodedBytes() {
+        return decodedBytes.sum();
+    }
+
+    // Bytes that did not have to cross the network thanks to compression
+    public long getBytesSaved() {
+        return getDecodedBytes() - getWireBytes();
+    }
+
+    // Decoded size divided by wire size, e.g. 5.0 when bodies shrank to a fifth; 1.0 when nothing was compressed
+    public double getCompressionRatio() {
+        long wire = getWireBytes();
+        return wire == 0 ? 1.0 : (double) getDecodedBytes() / wire;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("responses=%d (compressed %d), wire=%d B, decoded=%d B, ratio=%.2f, saved=%d B",
+                getResponses(), getCompressedResponses(), getWireBytes(), getDecodedBytes(),
+                getCompressionRatio(), getBytesSaved());
+    }
+}
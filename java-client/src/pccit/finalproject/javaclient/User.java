@@ -11,6 +11,7 @@ public class User {
     private String description;// User description or bio
     private String avatar_url;// URL to the user's avatar image
     private String dob;// Date of birth of the user
+    private String node;// Name of the backend node the user was read from; set by the client, not sent by the server
 
     // Default constructor
     public User() {
@@ -111,4 +112,14 @@ public class User {
     public void setDob(String dob) {
         this.dob = dob;
     }
+
+    // Getter for the node the user belongs to
+    public String getNode() {
+        return node;
+    }
+
+    // Setter for the node the user belongs to
+    public void setNode(String node) {
+        this.node = node;
+    }
 }
@@ -0,0 +1,307 @@
+package pccit.finalproject.javaclient;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Live feed of the user changes on one node, read from the server-sent events of GET /api/users/events.
+// Created, updated and deleted users are handed to the listener as they happen, so the admin table can be
+// kept current without reloading it.
+// When the stream drops, the feed reconnects after a jittered backoff and sends the ID of the last event it
+// received, so the server replays what was missed. If the server can no longer do that (it restarted, or too
+// many events have gone by), the listener is told to reload the node's users instead.
+// The stream sends a comment line every 15 seconds, so a connection that stays silent for much longer than that
+// is assumed dead and replaced.
+// Listener methods are called in order on the feed's own thread.
+public class UserChangeFeed {
+    private static final Log log = Log.get(UserChangeFeed.class);
+    private static final long DEFAULT_RETRY_MILLIS = 2000;
+    private static final long MAX_RECONNECT_MILLIS = 30_000;
+    private static final long IDLE_TIMEOUT_MILLIS = 45_000;
+    private static final long READY_TIMEOUT_MILLIS = 5000;
+
+    // Receives the changes of one node
+    public interface Listener {
+        // A user was created or updated; the user is tagged with its node
+        void onUserChanged(User user);
+
+        // A user was deleted
+        void onUserDeleted(String node, int id);
+
+        // The feed reconnected after missing changes that cannot be replayed, so the node's users must be
+        // reloaded. Changes delivered after this call follow the state at the time of the call.
+        void onResync(String node);
+
+        // The feed stopped for good, e.g. because the node has no event stream or the session has ended.
+        // Not called after close().
+        void onClosed(String node, Throwable error);
+    }
+
+    private final ApiClient apiClient;
+    private final Listener listener;
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private volatile boolean closed;
+    private volatile String lastEventId;
+    private volatile long retryMillis = DEFAULT_RETRY_MILLIS;
+    private volatile long lastActivity;
+    private volatile CompletableFuture<HttpResponse<InputStream>> connecting;
+    private volatile InputStream body;
+
+    UserChangeFeed(ApiClient apiClient, Listener listener) {
+        this.apiClient = apiClient;
+        this.listener = listener;
+    }
+
+    // Start reading the feed on a thread of its own, as it blocks on the stream for as long as the feed is open
+    void start() {
+        Thread thread = new Thread(this::run, "user-change-feed-" + apiClient.getNode());
+        thread.setDaemon(true);
+        thread.start();
+        CompletableFuture.delayedExecutor(READY_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, apiClient.getExecutor())
+                .execute(() -> ready.complete(null));
+    }
+
+    // Get the node the feed reads from
+    public String getNode() {
+        return apiClient.getNode();
+    }
+
+    // Completes once the feed is first connected and up to date: changes from then on will be delivered, so a
+    // user list loaded afterwards misses nothing. If the first connection fails or takes more than 5 seconds,
+    // it completes anyway so the caller is not held up, and onResync() is called once the feed does connect.
+    public CompletableFuture<Void> ready() {
+        return ready;
+    }
+
+    // Stop the feed, closing its connection
+    public void close() {
+        closed = true;
+        CompletableFuture<HttpResponse<InputStream>> pending = connecting;
+        if (pending != null) {
+            pending.cancel(true);
+        }
+        closeBody();
+        synchronized (this) {
+            notifyAll(); // Wake the reconnect backoff
+        }
+    }
+
+    private void run() {
+        int failures = 0;
+        while (!closed) {
+            try {
+                connecting = apiClient.openUserEvents(lastEventId);
+                HttpResponse<InputStream> response = connecting.join();
+                connecting = null;
+                body = response.body();
+                if (closed) {
+                    break;
+                }
+                lastActivity = System.nanoTime();
+                scheduleIdleCheck(body);
+                if (read(body)) {
+                    failures = 0; // The stream got as far as a ready event
+                }
+                log.info("Change feed of %s disconnected", getNode());
+            } catch (CompletionException | CancellationException | IOException e) {
+                if (closed) {
+                    break;
+                }
+                Throwable error = e.getCause() != null ? e.getCause() : e;
+                if (isPermanent(error)) {
+                    log.warn("Change feed of %s stopped: %s", getNode(), error.getMessage());
+                    ready.complete(null);
+                    listener.onClosed(getNode(), error);
+                    return;
+                }
+                log.warn("Change feed of %s failed: %s", getNode(), error.getMessage());
+                ready.complete(null); // Changes made until the feed connects are caught up through onResync()
+            } finally {
+                closeBody();
+            }
+            if (!closed) {
+                backoff(failures++);
+            }
+        }
+    }
+
+    // Read events until the stream ends. Returns true if a ready event was received.
+    private boolean read(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        boolean gotReady = false;
+        String id = null;
+        String event = null;
+        StringBuilder data = new StringBuilder();
+        for (String line; (line = reader.readLine()) != null && !closed; ) {
+            lastActivity = System.nanoTime();
+            if (line.isEmpty()) {
+                // A blank line ends the event
+                if (event != null || data.length() > 0) {
+                    gotReady |= dispatch(event == null ? "message" : event, data.toString());
+                }
+                if (id != null) {
+                    lastEventId = id;
+                }
+                id = null;
+                event = null;
+                data.setLength(0);
+                continue;
+            }
+            if (line.startsWith(":")) {
+                continue; // Comment, sent as a heartbeat
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(value(line, colon));
+            switch (field) {
+                case "id":
+                    id = value;
+                    break;
+                case "event":
+                    event = value;
+                    break;
+                case "data":
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                    break;
+                case "retry":
+                    try {
+                        retryMillis = Long.parseLong(value);
+                    } catch (NumberFormatException ignored) {
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return gotReady;
+    }
+
+    // Hand one event to the listener. Returns true for a ready event.
+    private boolean dispatch(String event, String data) {
+        try {
+            switch (event) {
+                case "ready":
+                    boolean resync = isResync(data);
+                    if (!ready.isDone()) {
+                        log.info("Change feed of %s connected", getNode());
+                        ready.complete(null); // The first load is up to the subscriber
+                    } else if (resync) {
+                        log.info("Change feed of %s missed changes, reloading", getNode());
+                        listener.onResync(getNode());
+                    }
+                    return true;
+                case "user-created":
+                case "user-updated":
+                    User user = JSONUtils.toObject(data, User.class);
+                    user.setNode(getNode());
+                    listener.onUserChanged(user);
+                    break;
+                case "user-deleted":
+                    // Only the id of a deleted user is sent
+                    listener.onUserDeleted(getNode(), JSONUtils.toObject(data, User.class).getId());
+                    break;
+                default:
+                    break; // Events added by later servers are ignored
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring malformed %s event from %s: %s", event, getNode(), e.getMessage());
+        }
+        return false;
+    }
+
+    // Whether the data of a ready event says the missed changes cannot be replayed. Data that cannot be read
+    // counts as a resync, as reloading the node's users is always safe.
+    private boolean isResync(String data) {
+        try {
+            return JSONUtils.toObject(data, ReadyEvent.class).isResync();
+        } catch (IOException e) {
+            log.warn("Malformed ready event from %s, reloading: %s", getNode(), e.getMessage());
+            return true;
+        }
+    }
+
+    // Close the connection if nothing, not even a heartbeat, has arrived for too long; checked until it closes
+    private void scheduleIdleCheck(InputStream in) {
+        CompletableFuture.delayedExecutor(IDLE_TIMEOUT_MILLIS / 3, TimeUnit.MILLISECONDS, apiClient.getExecutor())
+                .execute(() -> {
+                    if (body != in) {
+                        return;
+                    }
+                    if (System.nanoTime() - lastActivity > TimeUnit.MILLISECONDS.toNanos(IDLE_TIMEOUT_MILLIS)) {
+                        log.warn("Change feed of %s went silent, reconnecting", getNode());
+                        closeBody();
+                    } else {
+                        scheduleIdleCheck(in);
+                    }
+                });
+    }
+
+    // Wait before reconnecting: a random delay up to the server's retry interval, doubling with each failure
+    // in a row up to 30 seconds
+    private void backoff(int failures) {
+        long cap = Math.min(MAX_RECONNECT_MILLIS, retryMillis << Math.min(failures, 10));
+        long delay = ThreadLocalRandom.current().nextLong(cap + 1);
+        synchronized (this) {
+            try {
+                if (!closed) {
+                    wait(Math.max(delay, 1));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                closed = true;
+            }
+        }
+    }
+
+    private void closeBody() {
+        InputStream in = body;
+        body = null;
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // Errors that reconnecting will not fix: the node has no event stream, or the session is not allowed to use it
+    private static boolean isPermanent(Throwable error) {
+        if (!(error instanceof ApiException)) {
+            return false;
+        }
+        int status = ((ApiException) error).getStatusCode();
+        return status == 401 || status == 403 || status == 404;
+    }
+
+    // Position of a field's value: after the colon and the single space that may follow it
+    private static int value(String line, int colon) {
+        return colon + 1 < line.length() && line.charAt(colon + 1) == ' ' ? colon + 2 : colon + 1;
+    }
+
+    // Data of a "ready" event: whether the changes since Last-Event-ID could not be replayed
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private static class ReadyEvent {
+        private boolean resync;
+
+        public boolean isResync() {
+            return resync;
+        }
+
+        public void setResync(boolean resync) {
+            this.resync = resync;
+        }
+    }
+}
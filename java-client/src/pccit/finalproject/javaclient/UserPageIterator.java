@@ -0,0 +1,67 @@
+package pccit.finalproject.javaclient;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+// Walks the user list one page at a time using GET /api/users?limit=&after_id=.
+// As soon as a page is handed out, the request for the following page is started in the background,
+// so the next page is usually ready by the time the caller has finished with the current one.
+// If a request fails, hasNext() / next() throw a CompletionException whose cause is an ApiException.
+public class UserPageIterator implements Iterator<List<User>> {
+    private final ApiClient apiClient;
+    private final int pageSize;
+    private volatile CompletableFuture<List<User>> nextPage; // Null once the last page has been handed out
+    private List<User> ready; // Page fetched by hasNext() but not yet returned by next()
+
+    public UserPageIterator(ApiClient apiClient, int pageSize) {
+        this.apiClient = apiClient;
+        this.pageSize = pageSize;
+        this.nextPage = apiClient.getUsersPageAsync(0, pageSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+        CompletableFuture<List<User>> pending = nextPage;
+        if (ready == null && pending != null) {
+            List<User> page = pending.join();
+            if (nextPage != pending) {
+                throw new CancellationException(); // Closed while the page was arriving
+            }
+            if (page.size() != pageSize) {
+                // A short page is the last one, and a longer one means the server does not support paging
+                // and has sent every user at once
+                nextPage = null;
+            } else {
+                // Prefetch the following page while the caller works on this one
+                nextPage = apiClient.getUsersPageAsync(page.get(page.size() - 1).getId(), pageSize);
+            }
+            ready = page.isEmpty() ? null : page;
+        }
+        return ready != null;
+    }
+
+    @Override
+    public List<User> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<User> page = ready;
+        ready = null;
+        return page;
+    }
+
+    // Cancel the prefetch, if one is in flight, when the caller stops iterating early.
+    // May be called from another thread to abort an iteration blocked in hasNext(), which then throws
+    // a CancellationException.
+    public void close() {
+        CompletableFuture<List<User>> pending = nextPage;
+        nextPage = null;
+        if (pending != null) {
+            pending.cancel(true);
+        }
+        ready = null;
+    }
+}
@@ -0,0 +1,337 @@
+package pccit.finalproject.javaclient;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// Search index over username, realname and role, keyed by an int per user (the UserStore row key).
+// Two kinds of keys share one posting map:
+// - the first one and two characters of every word, so short queries match word prefixes ("jo" finds "John")
+// - every three-character substring of each field, so longer queries match anywhere ("ohn" finds "John")
+// A query is split on whitespace and a user matches when every term matches one of its fields.
+// Only the rarest posting list among the terms is scanned; its candidates are then checked against the
+// indexed text, so postings may safely hold stale IDs. Removed or changed users are therefore not cleared
+// from the postings straight away, and the index is rebuilt once stale users outnumber live ones.
+// The index belongs to the search thread, which both searches and applies updates. Updates may be made from
+// any thread (the table model makes them on the EDT) and are only queued there, so a long search never holds up
+// the thread making them; the search thread applies the queue whenever it is idle and before every search, so
+// a search sees every update made before it was started. A search checks for interruption, so a superseded
+// query stops early.
+public class UserSearchIndex {
+    private static final int MIN_SUBSTRING_LENGTH = 3; // Shorter terms only match word prefixes
+    private static final int CANCEL_CHECK_INTERVAL = 1024; // Candidates checked between interruption checks
+    // The search thread, shared by every index; in the client there is only the table's
+    private static final ExecutorService searchThread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Update CLEAR = new Update(-1, null);
+
+    // Only used on the search thread
+    private final PostingMap postings = new PostingMap();
+    private final Map<Integer, String> texts = new HashMap<>(); // Lower-cased indexed text of every live user
+    private int staleUsers; // Removed or changed users whose IDs may still be in the postings
+
+    private final Queue<Update> updates = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean applyScheduled = new AtomicBoolean();
+    private volatile int size;
+
+    // A queued change: the new text of a user, or null text to remove it
+    private static final class Update {
+        final int id;
+        final String text;
+
+        Update(int id, String text) {
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    // Add or replace the indexed fields of a user
+    public void put(int id, String username, String realname, String role) {
+        queue(new Update(id, normalize(username) + '\n' + normalize(realname) + '\n' + normalize(role)));
+    }
+
+    // Remove a user from the index
+    public void remove(int id) {
+        queue(new Update(id, null));
+    }
+
+    public void clear() {
+        queue(CLEAR);
+    }
+
+    // Get the number of users indexed, as of the updates applied so far
+    public int size() {
+        return size;
+    }
+
+    // Find the IDs of the users matching every whitespace-separated term of the query on the search thread,
+    // after applying every update made so far, and pass them to the consumer there; null for a blank query,
+    // meaning no filtering. Cancelling the returned future with interruption stops a search in progress, in
+    // which case the consumer is not called.
+    public Future<?> search(String query, Consumer<BitSet> consumer) {
+        return searchThread.submit(() -> {
+            applyUpdates();
+            BitSet matches;
+            try {
+                matches = find(query);
+            } catch (CancellationException e) {
+                return; // A newer query has taken over
+            }
+            consumer.accept(matches);
+        });
+    }
+
+    private void queue(Update update) {
+        updates.add(update);
+        if (applyScheduled.compareAndSet(false, true)) {
+            searchThread.execute(this::applyUpdates);
+        }
+    }
+
+    // Apply the queued updates; on the search thread only
+    private void applyUpdates() {
+        applyScheduled.set(false);
+        for (Update update = updates.poll(); update != null; update = updates.poll()) {
+            if (update == CLEAR) {
+                postings.clear();
+                texts.clear();
+                staleUsers = 0;
+            } else if (update.text == null) {
+                if (texts.remove(update.id) != null) {
+                    staleUsers++;
+                }
+            } else {
+                String previous = texts.put(update.id, update.text);
+                if (previous != null) {
+                    if (previous.equals(update.text)) {
+                        continue;
+                    }
+                    staleUsers++;
+                }
+                addKeys(update.id, update.text);
+            }
+        }
+        rebuildIfStale();
+        size = texts.size();
+    }
+
+    // Throws CancellationException if the calling thread is interrupted while searching
+    private BitSet find(String query) {
+        String[] terms = normalize(query).trim().split("\\s+");
+        if (terms[0].isEmpty()) {
+            return null;
+        }
+        BitSet matches = new BitSet();
+        // Scan the candidates of the most selective term only
+        Posting candidates = null;
+        for (String term : terms) {
+            Posting posting = rarestPosting(term);
+            if (posting == null) {
+                return matches; // Some term matches nobody
+            }
+            if (candidates == null || posting.size < candidates.size) {
+                candidates = posting;
+            }
+        }
+        for (int i = 0; i < candidates.size; i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Search superseded: " + query);
+            }
+            int id = candidates.ids[i];
+            if (!matches.get(id) && matchesAll(texts.get(id), terms)) {
+                matches.set(id);
+            }
+        }
+        return matches;
+    }
+
+    // Get the smallest posting list whose users may contain the term, or null if no user can
+    private Posting rarestPosting(String term) {
+        if (term.length() < MIN_SUBSTRING_LENGTH) {
+            return postings.get(key(term, 0, term.length()));
+        }
+        Posting rarest = null;
+        for (int i = 0; i + MIN_SUBSTRING_LENGTH <= term.length(); i++) {
+            Posting posting = postings.get(key(term, i, MIN_SUBSTRING_LENGTH));
+            if (posting == null) {
+                return null;
+            }
+            if (rarest == null || posting.size < rarest.size) {
+                rarest = posting;
+            }
+        }
+        return rarest;
+    }
+
+    // Check the indexed text of a live user against every term; null text means the user was removed
+    private static boolean matchesAll(String text, String[] terms) {
+        if (text == null) {
+            return false;
+        }
+        for (String term : terms) {
+            if (term.length() < MIN_SUBSTRING_LENGTH ? !hasWordPrefix(text, term) : !text.contains(term)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasWordPrefix(String text, String prefix) {
+        for (int at = text.indexOf(prefix); at >= 0; at = text.indexOf(prefix, at + 1)) {
+            if (at == 0 || !Character.isLetterOrDigit(text.charAt(at - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Add the ID to the posting of every key of the text: word prefixes of length one and two,
+    // and trigrams of each field
+    private void addKeys(int id, String text) {
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean wordChar = Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && !inWord) {
+                postings.add(key(text, i, 1), id);
+                if (i + 1 < text.length() && Character.isLetterOrDigit(text.charAt(i + 1))) {
+                    postings.add(key(text, i, 2), id);
+                }
+            }
+            inWord = wordChar;
+            // Trigrams never span the separator between fields
+            if (i + MIN_SUBSTRING_LENGTH <= text.length() && !containsSeparator(text, i, MIN_SUBSTRING_LENGTH)) {
+                postings.add(key(text, i, MIN_SUBSTRING_LENGTH), id);
+            }
+        }
+    }
+
+    private static boolean containsSeparator(String text, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            if (text.charAt(i) == '\n') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Pack up to three characters and their count into one key
+    private static long key(String text, int start, int length) {
+        long key = length;
+        for (int i = 0; i < length; i++) {
+            key = (key << 16) | text.charAt(start + i);
+        }
+        return key;
+    }
+
+    // Rebuild the postings from the live texts once stale users outnumber live ones
+    private void rebuildIfStale() {
+        if (staleUsers <= texts.size()) {
+            return;
+        }
+        postings.clear();
+        staleUsers = 0;
+        for (Map.Entry<Integer, String> entry : texts.entrySet()) {
+            addKeys(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    // Growable list of user IDs, in the order they were added
+    private static class Posting {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            // Keys repeated within one user's text add the ID only once
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    // Open-addressing hash map from packed key to posting, avoiding a boxed Long per lookup.
+    // Key 0 never occurs, since every key includes its length, so it marks an empty slot.
+    private static class PostingMap {
+        private long[] keys = new long[1024];
+        private Posting[] values = new Posting[1024];
+        private int count;
+
+        Posting get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        void add(long key, int id) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                if ((count + 1) * 2 > keys.length) {
+                    resize();
+                    add(key, id);
+                    return;
+                }
+                keys[slot] = key;
+                values[slot] = new Posting();
+                count++;
+            }
+            values[slot].add(id);
+        }
+
+        void clear() {
+            Arrays.fill(keys, 0);
+            Arrays.fill(values, null);
+            count = 0;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Posting[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Posting[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package pccit.finalproject.javaclient;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Local binary copy of the last user list, so the table can be filled at startup before the server answers.
+// File layout (big-endian):
+// - header: magic, format version, record count, record size, string heap length, save time, CRC32 of the rest
+// - one fixed-width record per user: the ID followed by an (offset, length) reference into the string heap
+//   for each text field, with offset -1 for null
+// - the string heap: UTF-8 bytes, each distinct string stored once
+// The file is read through a memory mapping, so only the pages actually touched are loaded.
+// A snapshot is written to a temporary file, forced to disk and then moved over the old one, so a crash
+// mid-write leaves the previous snapshot intact; the checksum catches any other damage.
+public class UserSnapshot {
+    private static final int MAGIC = 0x4E5A5553; // "NZUS"
+    public static final int FORMAT_VERSION = 2; // 2 added the node
+    private static final int HEADER_SIZE = 40;
+    // username, realname, role, avatar_url, create_date, description, dob, node
+    private static final int FIELD_COUNT = 8;
+    private static final int RECORD_SIZE = 4 + FIELD_COUNT * 8;
+
+    private final Path file;
+    private long savedAt;
+
+    // Create a snapshot in the default location, next to the avatar cache
+    public UserSnapshot() {
+        this(Paths.get(System.getProperty("user.home"), ".nz-discovery-admin", "users.snapshot"));
+    }
+
+    public UserSnapshot(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // Get the time the snapshot last read was saved, in milliseconds since the epoch
+    public long getSavedAt() {
+        return savedAt;
+    }
+
+    // Read the snapshot, handing users to the consumer in batches.
+    // Returns the number of users read, or -1 if there is no snapshot.
+    // Throws IOException if the file is unreadable, damaged or has an unknown format version.
+    public int read(int batchSize, Consumer<List<User>> batchConsumer) throws IOException {
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("Snapshot is truncated: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a user snapshot: " + file);
+        }
+        int version = buffer.getInt(4);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format version " + version + ": " + file);
+        }
+        int count = buffer.getInt(8);
+        int recordSize = buffer.getInt(12);
+        long heapLength = buffer.getLong(16);
+        long expectedLength = HEADER_SIZE + (long) count * recordSize + heapLength;
+        if (count < 0 || recordSize != RECORD_SIZE || heapLength < 0 || expectedLength != buffer.capacity()) {
+            throw new IOException("Snapshot is truncated or damaged: " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(HEADER_SIZE, buffer.capacity() - HEADER_SIZE));
+        if (crc.getValue() != buffer.getLong(32)) {
+            throw new IOException("Snapshot checksum mismatch: " + file);
+        }
+        savedAt = buffer.getLong(24);
+
+        int heapStart = HEADER_SIZE + count * RECORD_SIZE;
+        List<User> batch = new ArrayList<>(Math.min(batchSize, count));
+        for (int i = 0; i < count; i++) {
+            int record = HEADER_SIZE + i * RECORD_SIZE;
+            String[] fields = new String[FIELD_COUNT];
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                fields[field] = readString(buffer, heapStart, record + 4 + field * 8);
+            }
+            User user = new User(fields[0], fields[2]);
+            user.setId(buffer.getInt(record));
+            user.setRealname(fields[1]);
+            user.setAvatar_url(fields[3]);
+            user.setCreate_date(fields[4]);
+            user.setDescription(fields[5]);
+            user.setDob(fields[6]);
+            user.setNode(fields[7]);
+            batch.add(user);
+            if (batch.size() >= batchSize) {
+                batchConsumer.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            batchConsumer.accept(batch);
+        }
+        return count;
+    }
+
+    // Replace the snapshot with the rows of the store. The store must not change while it is written,
+    // so pass a copy when the original is still in use on the EDT.
+    public void write(UserStore store) throws IOException {
+        int count = store.size();
+        Map<String, Long> heapOffsets = new HashMap<>();
+        ByteBuffer records = ByteBuffer.allocate(count * RECORD_SIZE);
+        ByteArrayHeap heap = new ByteArrayHeap();
+        for (int row = 0; row < count; row++) {
+            records.putInt(store.getId(row));
+            writeString(records, heap, heapOffsets, store.getUsername(row));
+            writeString(records, heap, heapOffsets, store.getRealname(row));
+            writeString(records, heap, heapOffsets, store.getRole(row));
+            writeString(records, heap, heapOffsets, store.getAvatarUrl(row));
+            writeString(records, heap, heapOffsets, store.getCreateDate(row));
+            writeString(records, heap, heapOffsets, store.getDescription(row));
+            writeString(records, heap, heapOffsets, store.getDob(row));
+            writeString(records, heap, heapOffsets, store.getNode(row));
+        }
+        records.flip();
+        ByteBuffer heapBytes = ByteBuffer.wrap(heap.bytes, 0, heap.length);
+
+        CRC32 crc = new CRC32();
+        crc.update(records.duplicate());
+        crc.update(heapBytes.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(count)
+                .putInt(RECORD_SIZE)
+                .putLong(heap.length)
+                .putLong(System.currentTimeMillis())
+                .putLong(crc.getValue());
+        header.flip();
+
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), "users", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer[] parts = { header, records, heapBytes };
+                while (header.hasRemaining() || records.hasRemaining() || heapBytes.hasRemaining()) {
+                    channel.write(parts);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Remove the snapshot, e.g. after it was found to be damaged
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static String readString(ByteBuffer buffer, int heapStart, int reference) {
+        int offset = buffer.getInt(reference);
+        if (offset < 0) {
+            return null;
+        }
+        int length = buffer.getInt(reference + 4);
+        byte[] bytes = new byte[length];
+        buffer.get(heapStart + offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Write a reference to the string, adding it to the heap unless an equal string is already there.
+    // The map holds the offset and length of each stored string packed into one long.
+    private static void writeString(ByteBuffer records, ByteArrayHeap heap, Map<String, Long> heapOffsets,
+                                    String value) {
+        if (value == null) {
+            records.putInt(-1).putInt(0);
+            return;
+        }
+        Long reference = heapOffsets.get(value);
+        if (reference == null) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            reference = ((long) heap.append(bytes) << 32) | bytes.length;
+            heapOffsets.put(value, reference);
+        }
+        records.putLong(reference);
+    }
+
+    // Growable byte array for the string heap
+    private static class ByteArrayHeap {
+        byte[] bytes = new byte[8192];
+        int length;
+
+        int append(byte[] value) {
+            if (length + value.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + value.length));
+            }
+            System.arraycopy(value, 0, bytes, length, value.length);
+            length += value.length;
+            return length - value.length;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package pccit.finalproject.javaclient;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact, column-oriented store of the users shown in the admin table. Compared with a List<User>:
+// - ids are kept in a primitive int[] with an open-addressing (node, id) -> row index, so nothing is boxed
+// - node and role are dictionary-encoded into one byte per row each
+// - avatar_url is split into a shared directory prefix (e.g. "/images/") and a per-row file name
+// - the rarely shown text columns (create_date, description, dob) are packed together into one UTF-8 byte[]
+//   per row and only decoded when asked for
+// - password is never stored
+// A user is identified by its node together with its ID, as every backend node numbers its users separately.
+// Each row also gets a key of its own when added, an int that stays the same while the row exists and is
+// never reused until the store is cleared, for indexes that need a single dense int per user.
+// Rows are addressed by index, in insertion order. Not thread-safe; the table model uses it on the EDT.
+public class UserStore {
+    private static final int INITIAL_CAPACITY = 256;
+    // Positions of the fields packed into the details column
+    private static final int CREATE_DATE_FIELD = 0;
+    private static final int DESCRIPTION_FIELD = 1;
+    private static final int DOB_FIELD = 2;
+
+    private int size;
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private byte[] nodes = new byte[INITIAL_CAPACITY];
+    private int[] keys = new int[INITIAL_CAPACITY];
+    private String[] usernames = new String[INITIAL_CAPACITY];
+    private String[] realnames = new String[INITIAL_CAPACITY];
+    private byte[] roles = new byte[INITIAL_CAPACITY];
+    private short[] avatarPrefixes = new short[INITIAL_CAPACITY];
+    private String[] avatarNames = new String[INITIAL_CAPACITY];
+    private byte[][] details = new byte[INITIAL_CAPACITY][]; // Packed create_date, description and dob
+    private int[] stamps = new int[INITIAL_CAPACITY]; // Caller-defined marker per row, e.g. a refresh generation
+
+    // Dictionaries shared by every row; code 0 always means null
+    private final List<String> nodeValues = new ArrayList<>(List.of(""));
+    private final Map<String, Byte> nodeCodes = new HashMap<>();
+    private final List<String> roleValues = new ArrayList<>(List.of(""));
+    private final Map<String, Byte> roleCodes = new HashMap<>();
+    private final List<String> prefixValues = new ArrayList<>(List.of(""));
+    private final Map<String, Short> prefixCodes = new HashMap<>();
+
+    private final IdIndex index = new IdIndex();
+    private int nextKey;
+
+    public int size() {
+        return size;
+    }
+
+    // Get the row of the user with the given node and ID, or -1 if not present
+    public int indexOf(String node, int id) {
+        Byte code = node == null ? Byte.valueOf((byte) 0) : nodeCodes.get(node);
+        return code == null ? -1 : index.get(indexKey(code, id));
+    }
+
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    public String getNode(int row) {
+        return nodes[row] == 0 ? null : nodeValues.get(nodes[row]);
+    }
+
+    // Get the key the row was given when it was added
+    public int getKey(int row) {
+        return keys[row];
+    }
+
+    public String getUsername(int row) {
+        return usernames[row];
+    }
+
+    public String getRealname(int row) {
+        return realnames[row];
+    }
+
+    public String getRole(int row) {
+        return roles[row] == 0 ? null : roleValues.get(roles[row]);
+    }
+
+    public String getAvatarUrl(int row) {
+        String name = avatarNames[row];
+        return name == null ? null : prefixValues.get(avatarPrefixes[row]) + name;
+    }
+
+    public String getCreateDate(int row) {
+        return unpack(details[row], CREATE_DATE_FIELD);
+    }
+
+    public String getDescription(int row) {
+        return unpack(details[row], DESCRIPTION_FIELD);
+    }
+
+    public String getDob(int row) {
+        return unpack(details[row], DOB_FIELD);
+    }
+
+    public int getStamp(int row) {
+        return stamps[row];
+    }
+
+    public void setStamp(int row, int stamp) {
+        stamps[row] = stamp;
+    }
+
+    // Build a User object for the row (without password), for code that needs the full model class
+    public User toUser(int row) {
+        User user = new User(getUsername(row), getRole(row));
+        user.setId(getId(row));
+        user.setNode(getNode(row));
+        user.setRealname(getRealname(row));
+        user.setAvatar_url(getAvatarUrl(row));
+        user.setCreate_date(getCreateDate(row));
+        user.setDescription(getDescription(row));
+        user.setDob(getDob(row));
+        return user;
+    }
+
+    // Copy the rows into a new store that can be read on another thread while this one keeps changing.
+    // Strings and packed detail arrays are immutable once stored, so only the column arrays are copied.
+    public UserStore copy() {
+        UserStore copy = new UserStore();
+        copy.size = size;
+        copy.ids = Arrays.copyOf(ids, size);
+        copy.nodes = Arrays.copyOf(nodes, size);
+        copy.keys = Arrays.copyOf(keys, size);
+        copy.nextKey = nextKey;
+        copy.usernames = Arrays.copyOf(usernames, size);
+        copy.realnames = Arrays.copyOf(realnames, size);
+        copy.roles = Arrays.copyOf(roles, size);
+        copy.avatarPrefixes = Arrays.copyOf(avatarPrefixes, size);
+        copy.avatarNames = Arrays.copyOf(avatarNames, size);
+        copy.details = Arrays.copyOf(details, size);
+        copy.stamps = Arrays.copyOf(stamps, size);
+        copy.nodeValues.addAll(nodeValues.subList(1, nodeValues.size()));
+        copy.nodeCodes.putAll(nodeCodes);
+        copy.roleValues.addAll(roleValues.subList(1, roleValues.size()));
+        copy.roleCodes.putAll(roleCodes);
+        copy.prefixValues.addAll(prefixValues.subList(1, prefixValues.size()));
+        copy.prefixCodes.putAll(prefixCodes);
+        for (int row = 0; row < size; row++) {
+            copy.index.put(indexKey(nodes[row], ids[row]), row);
+        }
+        return copy;
+    }
+
+    // Append the user as a new row, returning its index
+    public int add(User user) {
+        if (size == ids.length) {
+            grow();
+        }
+        int row = size++;
+        ids[row] = user.getId();
+        nodes[row] = code(user.getNode(), nodeValues, nodeCodes, "nodes");
+        keys[row] = nextKey++;
+        index.put(indexKey(nodes[row], ids[row]), row);
+        set(row, user);
+        return row;
+    }
+
+    // Overwrite the columns of an existing row with the user's values; the node and ID must not change
+    public void set(int row, User user) {
+        usernames[row] = user.getUsername();
+        realnames[row] = user.getRealname();
+        roles[row] = code(user.getRole(), roleValues, roleCodes, "roles");
+        setAvatarUrl(row, user.getAvatar_url());
+        details[row] = pack(user.getCreate_date(), user.getDescription(), user.getDob());
+    }
+
+    // Check whether the columns shown in the table differ from the user's values
+    public boolean differsFrom(int row, User user) {
+        return !equal(usernames[row], user.getUsername())
+                || !equal(getRole(row), user.getRole())
+                || !equal(getAvatarUrl(row), user.getAvatar_url())
+                || !equal(realnames[row], user.getRealname());
+    }
+
+    // Remove the rows in [from, to] (inclusive), shifting later rows down
+    public void removeRange(int from, int to) {
+        int count = to - from + 1;
+        for (int row = from; row <= to; row++) {
+            index.remove(indexKey(nodes[row], ids[row]));
+        }
+        int tail = size - to - 1;
+        System.arraycopy(ids, to + 1, ids, from, tail);
+        System.arraycopy(nodes, to + 1, nodes, from, tail);
+        System.arraycopy(keys, to + 1, keys, from, tail);
+        System.arraycopy(usernames, to + 1, usernames, from, tail);
+        System.arraycopy(realnames, to + 1, realnames, from, tail);
+        System.arraycopy(roles, to + 1, roles, from, tail);
+        System.arraycopy(avatarPrefixes, to + 1, avatarPrefixes, from, tail);
+        System.arraycopy(avatarNames, to + 1, avatarNames, from, tail);
+        System.arraycopy(details, to + 1, details, from, tail);
+        System.arraycopy(stamps, to + 1, stamps, from, tail);
+        size -= count;
+        // Release references held by the vacated slots
+        Arrays.fill(usernames, size, size + count, null);
+        Arrays.fill(realnames, size, size + count, null);
+        Arrays.fill(avatarNames, size, size + count, null);
+        Arrays.fill(details, size, size + count, null);
+        for (int row = from; row < size; row++) {
+            index.put(indexKey(nodes[row], ids[row]), row);
+        }
+    }
+
+    // Remove every row whose index is set in the bit set, compacting all columns in a single pass
+    public void removeRows(BitSet rows) {
+        int first = rows.nextSetBit(0);
+        if (first < 0 || first >= size) {
+            return;
+        }
+        int target = first;
+        for (int row = first; row < size; row++) {
+            if (rows.get(row)) {
+                index.remove(indexKey(nodes[row], ids[row]));
+                continue;
+            }
+            ids[target] = ids[row];
+            nodes[target] = nodes[row];
+            keys[target] = keys[row];
+            usernames[target] = usernames[row];
+            realnames[target] = realnames[row];
+            roles[target] = roles[row];
+            avatarPrefixes[target] = avatarPrefixes[row];
+            avatarNames[target] = avatarNames[row];
+            details[target] = details[row];
+            stamps[target] = stamps[row];
+            index.put(indexKey(nodes[target], ids[target]), target);
+            target++;
+        }
+        // Release references held by the vacated slots
+        Arrays.fill(usernames, target, size, null);
+        Arrays.fill(realnames, target, size, null);
+        Arrays.fill(avatarNames, target, size, null);
+        Arrays.fill(details, target, size, null);
+        size = target;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            removeRange(0, size - 1);
+        }
+        nextKey = 0;
+    }
+
+    private void setAvatarUrl(int row, String avatarUrl) {
+        if (avatarUrl == null) {
+            avatarPrefixes[row] = 0;
+            avatarNames[row] = null;
+            return;
+        }
+        int slash = avatarUrl.lastIndexOf('/');
+        String prefix = avatarUrl.substring(0, slash + 1);
+        Short code = prefixCodes.get(prefix);
+        if (code == null) {
+            if (prefixValues.size() > Short.MAX_VALUE) {
+                // Too many distinct directories to encode; keep the whole URL in the name column
+                avatarPrefixes[row] = 0;
+                avatarNames[row] = avatarUrl;
+                return;
+            }
+            code = (short) prefixValues.size();
+            prefixValues.add(prefix);
+            prefixCodes.put(prefix, code);
+        }
+        avatarPrefixes[row] = code;
+        avatarNames[row] = avatarUrl.substring(slash + 1);
+    }
+
+    // Get the one-byte code of a value in a dictionary, adding the value if it is new
+    private static byte code(String value, List<String> values, Map<String, Byte> codes, String kind) {
+        if (value == null) {
+            return 0;
+        }
+        Byte code = codes.get(value);
+        if (code == null) {
+            if (values.size() > Byte.MAX_VALUE) {
+                throw new IllegalStateException("Too many distinct " + kind);
+            }
+            code = (byte) values.size();
+            values.add(value);
+            codes.put(value, code);
+        }
+        return code;
+    }
+
+    private void grow() {
+        int capacity = Math.max(ids.length * 2, INITIAL_CAPACITY);
+        ids = Arrays.copyOf(ids, capacity);
+        nodes = Arrays.copyOf(nodes, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        usernames = Arrays.copyOf(usernames, capacity);
+        realnames = Arrays.copyOf(realnames, capacity);
+        roles = Arrays.copyOf(roles, capacity);
+        avatarPrefixes = Arrays.copyOf(avatarPrefixes, capacity);
+        avatarNames = Arrays.copyOf(avatarNames, capacity);
+        details = Arrays.copyOf(details, capacity);
+        stamps = Arrays.copyOf(stamps, capacity);
+    }
+
+    // Pack the values as a sequence of (4-byte length, UTF-8 bytes) entries, with length -1 for null.
+    // Returns null when every value is null.
+    private static byte[] pack(String... values) {
+        byte[][] encoded = new byte[values.length][];
+        int length = 0;
+        boolean empty = true;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                encoded[i] = values[i].getBytes(StandardCharsets.UTF_8);
+                length += encoded[i].length;
+                empty = false;
+            }
+            length += 4;
+        }
+        if (empty) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (byte[] value : encoded) {
+            buffer.putInt(value == null ? -1 : value.length);
+            if (value != null) {
+                buffer.put(value);
+            }
+        }
+        return buffer.array();
+    }
+
+    // Decode the field at the given position from a packed byte[]
+    private static String unpack(byte[] packed, int field) {
+        if (packed == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(packed);
+        for (int i = 0; i < field; i++) {
+            int length = buffer.getInt();
+            buffer.position(buffer.position() + Math.max(length, 0));
+        }
+        int length = buffer.getInt();
+        return length < 0 ? null : new String(packed, buffer.position(), length, StandardCharsets.UTF_8);
+    }
+
+    // Combine a node code and user ID into the key of the (node, id) -> row index
+    private static long indexKey(byte node, int id) {
+        return (long) node << 32 | (id & 0xFFFFFFFFL);
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    // Open-addressing hash map from (node, id) key to row index, using linear probing over primitive arrays
+    private static class IdIndex {
+        private static final int EMPTY = -1;
+
+        private long[] keys = new long[INITIAL_CAPACITY * 2];
+        private int[] values = filled(INITIAL_CAPACITY * 2);
+        private int count;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; values[slot] != EMPTY; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return EMPTY;
+        }
+
+        void put(long key, int value) {
+            if ((count + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != EMPTY) {
+                if (keys[slot] == key) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            count++;
+        }
+
+        void remove(long key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] == EMPTY) {
+                return;
+            }
+            values[slot] = EMPTY;
+            count--;
+            // Re-insert the rest of the probe run so later lookups do not stop at the gap
+            for (slot = (slot + 1) & mask; values[slot] != EMPTY; slot = (slot + 1) & mask) {
+                long movedKey = keys[slot];
+                int movedValue = values[slot];
+                values[slot] = EMPTY;
+                count--;
+                put(movedKey, movedValue);
+            }
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[capacity];
+            values = filled(capacity);
+            count = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        private static int[] filled(int capacity) {
+            int[] array = new int[capacity];
+            Arrays.fill(array, EMPTY);
+            return array;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package pccit.finalproject.javaclient;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Table model backed by the compact UserStore and indexed by node and user ID, so that refreshes only fire
+// events for the rows that actually changed instead of rebuilding the whole table. Users from every backend
+// node share the table, with the node they belong to in the first column.
+// A UserSearchIndex over the rows, keyed by UserStore row key, is kept up to date as users are merged and
+// removed. All methods must be called on the Event Dispatch Thread.
+public class UserTableModel extends AbstractTableModel {
+    public static final int NODE_COLUMN = 0;
+    public static final int ID_COLUMN = 1;
+    public static final int USERNAME_COLUMN = 2;
+    public static final int ROLE_COLUMN = 3;
+    public static final int AVATAR_COLUMN = 4;
+
+    private static final String[] COLUMN_NAMES = { "Node", "ID", "Username", "Role", "Avatar" };
+    // Runs of removed rows above which they are removed in one pass and reported as a data change, since
+    // removing each run on its own moves every row below it
+    private static final int MAX_DELETE_EVENTS = 16;
+
+    private final UserStore store = new UserStore();
+    private final UserSearchIndex searchIndex = new UserSearchIndex();
+    private int generation; // Stamp given to every row merged during the current refresh
+    private boolean refreshing;
+
+    @Override
+    public int getRowCount() {
+        return store.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == ID_COLUMN ? Integer.class : String.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (column) {
+            case NODE_COLUMN:
+                return store.getNode(row);
+            case ID_COLUMN:
+                return store.getId(row);
+            case USERNAME_COLUMN:
+                return store.getUsername(row);
+            case ROLE_COLUMN:
+                return store.getRole(row);
+            case AVATAR_COLUMN:
+                return store.getAvatarUrl(row);
+            default:
+                return null;
+        }
+    }
+
+    // Get the store holding the rows, for reading user fields by row index
+    public UserStore getStore() {
+        return store;
+    }
+
+    // Get the search index over the rows; it may be queried from any thread
+    public UserSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    // Get the row index of the user with the given node and ID, or -1 if not present
+    public int indexOfId(String node, int id) {
+        return store.indexOf(node, id);
+    }
+
+    // Start a refresh: users merged until endRefresh() is called are considered current,
+    // and every other row is removed when the refresh ends
+    public void beginRefresh() {
+        generation++;
+        refreshing = true;
+    }
+
+    // Insert new users and update changed ones, firing one event per contiguous run of inserted rows
+    public void mergeUsers(List<User> batch) {
+        int firstInserted = -1;
+        for (User user : batch) {
+            int row = store.indexOf(user.getNode(), user.getId());
+            if (row < 0) {
+                row = store.add(user);
+                searchIndex.put(store.getKey(row), user.getUsername(), user.getRealname(), user.getRole());
+                if (firstInserted < 0) {
+                    firstInserted = row;
+                }
+            } else if (store.differsFrom(row, user)) {
+                store.set(row, user);
+                searchIndex.put(store.getKey(row), user.getUsername(), user.getRealname(), user.getRole());
+                fireTableRowsUpdated(row, row);
+            } else {
+                store.set(row, user); // Keep the newest values for fields that are not displayed
+            }
+            store.setStamp(row, generation);
+        }
+        if (firstInserted >= 0) {
+            fireTableRowsInserted(firstInserted, store.size() - 1);
+        }
+    }
+
+    // Abandon a refresh without removing anything: rows not received yet may still exist on the server
+    public void cancelRefresh() {
+        refreshing = false;
+    }
+
+    // Finish a refresh, removing every row that was not received since beginRefresh(), except the rows of
+    // the given nodes: their users could not all be loaded, so missing rows may still exist there
+    public void endRefresh(Set<String> incompleteNodes) {
+        if (!refreshing) {
+            return;
+        }
+        refreshing = false;
+        BitSet stale = new BitSet(store.size());
+        for (int row = 0; row < store.size(); row++) {
+            if (store.getStamp(row) != generation && !incompleteNodes.contains(store.getNode(row))) {
+                stale.set(row);
+            }
+        }
+        removeRows(stale);
+    }
+
+    // Remove several users of one node
+    public void removeUsers(String node, Iterable<Integer> ids) {
+        removeUsers(Collections.singletonMap(node, ids));
+    }
+
+    // Remove users of any number of nodes at once, given by node, rather than shifting the rows below each one
+    // on its own
+    public void removeUsers(Map<String, ? extends Iterable<Integer>> idsByNode) {
+        BitSet rows = new BitSet(store.size());
+        for (Map.Entry<String, ? extends Iterable<Integer>> node : idsByNode.entrySet()) {
+            for (Integer id : node.getValue()) {
+                int row = store.indexOf(node.getKey(), id);
+                if (row >= 0) {
+                    rows.set(row);
+                }
+            }
+        }
+        removeRows(rows);
+    }
+
+    // Remove all rows
+    public void clear() {
+        refreshing = false;
+        if (store.size() == 0) {
+            return;
+        }
+        int last = store.size() - 1;
+        store.clear();
+        searchIndex.clear();
+        fireTableRowsDeleted(0, last);
+    }
+
+    // Remove the given rows. Listeners such as the table's row sorter look the rows up again when notified, so
+    // every event must describe the model as it is at that moment: each run of rows is removed and reported on
+    // its own, from the bottom up so the indexes of the runs above stay valid. With many runs the rows are
+    // removed in one pass instead and the table is told that all data changed, which clears its selection.
+    private void removeRows(BitSet rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int runs = 0;
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            searchIndex.remove(store.getKey(row));
+            if (!rows.get(row + 1)) {
+                runs++;
+            }
+        }
+        if (runs > MAX_DELETE_EVENTS) {
+            store.removeRows(rows);
+            fireTableDataChanged();
+            return;
+        }
+        for (int end = rows.previousSetBit(rows.length() - 1); end >= 0; ) {
+            int start = rows.previousClearBit(end) + 1;
+            store.removeRange(start, end);
+            fireTableRowsDeleted(start, end);
+            end = start > 0 ? rows.previousSetBit(start - 1) : -1;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package pccit.finalproject.javaclient;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// DecompressingBodyHandler against a local server sending the same JSON body with each Content-Encoding,
+// and a gzip body cut off part way through
+class DecompressingBodyHandlerTest {
+    private static final byte[] BODY = usersJson();
+    private static final byte[] GZIP = gzip(BODY);
+    private static final byte[] DEFLATE = deflate(BODY);
+
+    private static HttpServer server;
+    private static HttpClient client;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serve("/identity", null, BODY);
+        serve("/gzip", "gzip", GZIP);
+        serve("/deflate", "deflate", DEFLATE);
+        serve("/truncated", "gzip", Arrays.copyOf(GZIP, GZIP.length / 2));
+        server.start();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void identityBodyIsPassedThrough() throws Exception {
+        TransferStats stats = new TransferStats();
+        assertArrayEquals(BODY, fetch("/identity", stats));
+        assertEquals(1, stats.getResponses());
+        assertEquals(0, stats.getCompressedResponses());
+        assertEquals(BODY.length, stats.getWireBytes());
+        assertEquals(BODY.length, stats.getDecodedBytes());
+        assertEquals(1.0, stats.getCompressionRatio());
+        assertEquals(0, stats.getBytesSaved());
+    }
+
+    @Test
+    void gzipBodyIsDecoded() throws Exception {
+        TransferStats stats = new TransferStats();
+        assertArrayEquals(BODY, fetch("/gzip", stats));
+        assertCompressed(stats, GZIP.length);
+    }
+
+    @Test
+    void deflateBodyIsDecoded() throws Exception {
+        TransferStats stats = new TransferStats();
+        assertArrayEquals(BODY, fetch("/deflate", stats));
+        assertCompressed(stats, DEFLATE.length);
+    }
+
+    @Test
+    void statsAddUpOverResponses() throws Exception {
+        TransferStats stats = new TransferStats();
+        fetch("/gzip", stats);
+        fetch("/identity", stats);
+        assertEquals(2, stats.getResponses());
+        assertEquals(1, stats.getCompressedResponses());
+        assertEquals(GZIP.length + BODY.length, stats.getWireBytes());
+        assertEquals(2L * BODY.length, stats.getDecodedBytes());
+    }
+
+    @Test
+    void truncatedGzipBodyFailsAndIsStillRecorded() throws Exception {
+        TransferStats stats = new TransferStats();
+        HttpResponse<InputStream> response = send("/truncated", stats);
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        try (InputStream body = response.body()) {
+            assertThrows(IOException.class, () -> body.transferTo(decoded));
+        }
+        assertTrue(decoded.size() < BODY.length);
+        assertArrayEquals(Arrays.copyOf(BODY, decoded.size()), decoded.toByteArray());
+        assertEquals(1, stats.getResponses());
+        assertEquals(1, stats.getCompressedResponses());
+        assertEquals(GZIP.length / 2, stats.getWireBytes());
+        assertEquals(decoded.size(), stats.getDecodedBytes());
+    }
+
+    private static void assertCompressed(TransferStats stats, int wireLength) {
+        assertEquals(1, stats.getResponses());
+        assertEquals(1, stats.getCompressedResponses());
+        assertEquals(wireLength, stats.getWireBytes());
+        assertEquals(BODY.length, stats.getDecodedBytes());
+        assertEquals((double) BODY.length / wireLength, stats.getCompressionRatio(), 1e-9);
+        assertTrue(stats.getCompressionRatio() > 3, "repetitive JSON should compress well: " + stats);
+        assertEquals(BODY.length - wireLength, stats.getBytesSaved());
+    }
+
+    private static byte[] fetch(String path, TransferStats stats) throws Exception {
+        try (InputStream body = send(path, stats).body()) {
+            return body.readAllBytes();
+        }
+    }
+
+    private static HttpResponse<InputStream> send(String path, TransferStats stats) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create("http://localhost:" + server.getAddress().getPort() + path))
+                .setHeader("Accept-Encoding", DecompressingBodyHandler.ACCEPT_ENCODING)
+                .build();
+        HttpResponse<InputStream> response = client.send(request, new DecompressingBodyHandler(stats));
+        assertEquals(200, response.statusCode());
+        return response;
+    }
+
+    private static void serve(String path, String encoding, byte[] bytes) {
+        server.createContext(path, exchange -> {
+            if (encoding != null) {
+                exchange.getResponseHeaders().set("Content-Encoding", encoding);
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+    }
+
+    private static byte[] usersJson() {
+        StringBuilder json = new StringBuilder("[");
+        for (int id = 1; id <= 500; id++) {
+            json.append(id == 1 ? "" : ",").append("{\"id\":").append(id).append(",\"username\":\"user").append(id)
+                    .append("\",\"role\":\"user\",\"avatar_url\":\"/images/avatars/user").append(id).append(".png\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream deflate = new DeflaterOutputStream(out)) {
+            deflate.write(bytes);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,401 @@
+package pccit.finalproject.javaclient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Stand-in for the backend that injects faults, for checking how the client copes with a slow or failing
+// server without touching the real one. Serves the endpoints ApiClient uses: login and logout, the user list
+// (whole or paged), user deletes, avatar images and the user change event stream.
+//
+// Lives with the tests, which start it in-process on a free port (--port 0); run it on its own with
+// mvn test-compile and the classpath given in the README.
+//
+// Usage: FaultInjectingServer [--port 3000] [--users 1000] [options]
+//   --latency MS          Delay added to every request (default 5)
+//   --slow-rate P         Fraction of requests delayed by --slow-millis more (default 0)
+//   --slow-millis MS      Extra delay of a slow request (default 2000)
+//   --error-rate P        Fraction of requests answered with 503 (default 0)
+//   --retry-after S       Retry-After seconds sent with each 503 (default none)
+//   --reset-rate P        Fraction of requests whose connection is closed without a response (default 0)
+//   --outage START:LENGTH Answer every request with 503 from START to START + LENGTH seconds after startup
+//   --stall EVERY:MS      Stall the whole server for the last MS of every EVERY seconds, as a long GC pause
+//                         would: each request that arrives meanwhile is held until the stall ends
+//   --churn N             Users created, renamed or deleted per second, published to the event stream (default 0)
+//   --churn-for S         Stop the churn S seconds after startup (default never)
+//   --stream-millis MS    Close each event stream after MS, so clients have to resume it (default never)
+// Prints a line of request and fault counts every 5 seconds.
+public class FaultInjectingServer {
+    private static final byte[] AVATAR = new byte[] { // 1x1 transparent PNG
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R', 0, 0, 0, 1, 0, 0, 0,
+            1, 8, 6, 0, 0, 0, 0x1f, 0x15, (byte) 0xc4, (byte) 0x89, 0, 0, 0, 13, 'I', 'D', 'A', 'T', 0x78,
+            (byte) 0x9c, 0x63, 0, 1, 0, 0, 5, 0, 1, 0x0d, 0x0a, 0x2d, (byte) 0xb4, 0, 0, 0, 0, 'I', 'E', 'N', 'D',
+            (byte) 0xae, 'B', 0x60, (byte) 0x82 };
+
+    private final Map<String, String> options;
+    private final ConcurrentSkipListSet<Integer> userIds = new ConcurrentSkipListSet<>();
+    private final Map<Integer, Integer> renames = new ConcurrentHashMap<>(); // Times each user has been renamed
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36); // Event IDs are epoch-sequence
+    private final Deque<String[]> eventHistory = new ArrayDeque<>(); // Recent events as { sequence, id, type, data }
+    private final List<BlockingQueue<String[]>> eventStreams = new ArrayList<>(); // Guarded by eventHistory
+    private long eventSequence; // Guarded by eventHistory
+    private final long startedAt = System.nanoTime();
+    private final long latencyMillis;
+    private final double slowRate;
+    private final long slowMillis;
+    private final double errorRate;
+    private final String retryAfter;
+    private final double resetRate;
+    private final long outageStartNanos;
+    private final long outageEndNanos;
+    private final long stallEveryNanos;
+    private final long stallNanos;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong slowed = new AtomicLong();
+    private final AtomicLong stalled = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong resets = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService handlers;
+    private ScheduledExecutorService scheduler;
+
+    FaultInjectingServer(Map<String, String> options) {
+        this.options = options;
+        int users = Integer.parseInt(options.getOrDefault("users", "1000"));
+        for (int id = 1; id <= users; id++) {
+            userIds.add(id);
+        }
+        latencyMillis = Long.parseLong(options.getOrDefault("latency", "5"));
+        slowRate = Double.parseDouble(options.getOrDefault("slow-rate", "0"));
+        slowMillis = Long.parseLong(options.getOrDefault("slow-millis", "2000"));
+        errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0"));
+        retryAfter = options.get("retry-after");
+        resetRate = Double.parseDouble(options.getOrDefault("reset-rate", "0"));
+        String outage = options.get("outage");
+        if (outage != null) {
+            String[] parts = outage.split(":");
+            outageStartNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(parts[0]));
+            outageEndNanos = outageStartNanos + TimeUnit.SECONDS.toNanos(Long.parseLong(parts[1]));
+        } else {
+            outageStartNanos = -1;
+            outageEndNanos = -1;
+        }
+        String stall = options.get("stall");
+        if (stall != null) {
+            String[] parts = stall.split(":");
+            stallEveryNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(parts[0]));
+            stallNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(parts[1]));
+        } else {
+            stallEveryNanos = 0;
+            stallNanos = 0;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true"); // Otherwise small responses wait on Nagle
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                System.err.println("Invalid option: " + args[i]);
+                System.exit(2);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        new FaultInjectingServer(options).start();
+    }
+
+    void start() throws IOException {
+        int port = Integer.parseInt(options.getOrDefault("port", "3000"));
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", this::handle);
+        handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.start();
+        System.out.println("Fault-injecting server on port " + getPort() + " with " + userIds.size() + " users");
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleAtFixedRate(() -> System.out.printf(
+                "requests=%d slowed=%d stalled=%d errors=%d resets=%d events=%d%n", requests.get(), slowed.get(),
+                stalled.get(), errors.get(), resets.get(), events.get()), 5, 5, TimeUnit.SECONDS);
+        double churn = Double.parseDouble(options.getOrDefault("churn", "0"));
+        if (churn > 0) {
+            ScheduledFuture<?> churning = scheduler.scheduleAtFixedRate(this::churn, 0, (long) (1_000_000 / churn),
+                    TimeUnit.MICROSECONDS);
+            if (options.containsKey("churn-for")) {
+                scheduler.schedule(() -> churning.cancel(false), Long.parseLong(options.get("churn-for")),
+                        TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    // Stop serving, dropping any requests in progress
+    void stop() {
+        server.stop(0);
+        handlers.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    // Get the port the server listens on, which the system chooses when started with --port 0
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Get the root URL of the server, e.g. "http://localhost:3000"
+    String getUrl() {
+        return "http://localhost:" + getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            if (!injectFault(exchange)) {
+                route(exchange);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Apply the configured latency and faults. Returns true if the request has been dealt with.
+    private boolean injectFault(HttpExchange exchange) throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMillis;
+        if (random.nextDouble() < slowRate) {
+            slowed.incrementAndGet();
+            delay += slowMillis;
+        }
+        Thread.sleep(delay);
+        long uptime = System.nanoTime() - startedAt;
+        if (stallEveryNanos > 0) {
+            long untilPeriodEnd = stallEveryNanos - uptime % stallEveryNanos;
+            if (untilPeriodEnd <= stallNanos) {
+                stalled.incrementAndGet();
+                TimeUnit.NANOSECONDS.sleep(untilPeriodEnd);
+                uptime += untilPeriodEnd;
+            }
+        }
+        boolean inOutage = uptime >= outageStartNanos && uptime < outageEndNanos;
+        if (random.nextDouble() < resetRate) {
+            resets.incrementAndGet();
+            return true; // Closing the exchange without a response drops the connection
+        }
+        if (inOutage || random.nextDouble() < errorRate) {
+            errors.incrementAndGet();
+            if (retryAfter != null) {
+                exchange.getResponseHeaders().set("Retry-After", retryAfter);
+            }
+            exchange.sendResponseHeaders(503, -1);
+            return true;
+        }
+        return false;
+    }
+
+    private void route(HttpExchange exchange) throws IOException, InterruptedException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        if (path.equals("/api/auth")) {
+            if (method.equals("POST")) {
+                exchange.getResponseHeaders().add("Set-Cookie", "authToken=stub; Path=/");
+            }
+            exchange.sendResponseHeaders(method.equals("POST") ? 200 : 204, -1);
+        } else if (path.equals("/api/users") && method.equals("GET")) {
+            sendUsers(exchange);
+        } else if (path.equals("/api/users/events") && method.equals("GET")) {
+            streamEvents(exchange);
+        } else if (path.startsWith("/images/")) {
+            exchange.getResponseHeaders().set("Content-Type", "image/png");
+            send(exchange, 200, AVATAR);
+        } else if (path.startsWith("/api/users/") && method.equals("DELETE")) {
+            int id = Integer.parseInt(path.substring("/api/users/".length()));
+            boolean removed = userIds.remove(id);
+            if (removed) {
+                publish("user-deleted", "{\"id\":" + id + "}");
+            }
+            exchange.sendResponseHeaders(removed ? 200 : 404, -1);
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+        }
+    }
+
+    // Send every user, or one page of them if ?limit= is given
+    private void sendUsers(HttpExchange exchange) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    query.put(pair.substring(0, equals), pair.substring(equals + 1));
+                }
+            }
+        }
+        int limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : Integer.MAX_VALUE;
+        int afterId = Integer.parseInt(query.getOrDefault("after_id", "0"));
+
+        StringBuilder json = new StringBuilder("[");
+        int count = 0;
+        for (int id : userIds.tailSet(afterId, false)) {
+            if (count++ == limit) {
+                break;
+            }
+            if (count > 1) {
+                json.append(',');
+            }
+            json.append(userJson(id));
+        }
+        json.append(']');
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        send(exchange, 200, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String userJson(int id) {
+        int renamed = renames.getOrDefault(id, 0);
+        return "{\"id\":" + id + ",\"username\":\"user" + id + "\",\"realname\":\"Test User " + id
+                + (renamed > 0 ? " (renamed " + renamed + ")" : "") + "\",\"role\":\""
+                + (id % 10 == 0 ? "admin" : "user") + "\",\"avatar_url\":\"/images/avatar-" + id % 4
+                + ".png\",\"create_date\":\"2024-01-01 00:00:00\"}";
+    }
+
+    // Make one random change to the users: create a user, rename one, or delete one
+    private void churn() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int change = random.nextInt(3);
+        if (change == 0 || userIds.isEmpty()) {
+            int id = userIds.isEmpty() ? 1 : userIds.last() + 1;
+            userIds.add(id);
+            publish("user-created", userJson(id));
+            return;
+        }
+        Integer id = userIds.ceiling(random.nextInt(userIds.last()) + 1);
+        if (id == null) {
+            return;
+        }
+        if (change == 1) {
+            renames.merge(id, 1, Integer::sum);
+            publish("user-updated", userJson(id));
+        } else if (userIds.remove(id)) {
+            publish("user-deleted", "{\"id\":" + id + "}");
+        }
+    }
+
+    // Record a user change and hand it to every open event stream, keeping the last 1000 for resuming streams
+    private void publish(String type, String data) {
+        synchronized (eventHistory) {
+            eventSequence++;
+            String[] event = { Long.toString(eventSequence), epoch + "-" + eventSequence, type, data };
+            eventHistory.addLast(event);
+            if (eventHistory.size() > 1000) {
+                eventHistory.removeFirst();
+            }
+            for (BlockingQueue<String[]> stream : eventStreams) {
+                stream.add(event);
+            }
+        }
+        events.incrementAndGet();
+    }
+
+    // Stream user changes as server-sent events like the backend: the events missed since Last-Event-ID, then
+    // "ready" (with resync true if they are unknown), then every change as it happens, with a comment line
+    // every 15 seconds. Holds the handler thread for as long as the stream is open.
+    private void streamEvents(HttpExchange exchange) throws IOException, InterruptedException {
+        String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+        BlockingQueue<String[]> queue = new LinkedBlockingQueue<>();
+        List<String[]> missed = null;
+        String readyId;
+        synchronized (eventHistory) {
+            long after = resumePoint(lastEventId);
+            long oldest = eventHistory.isEmpty() ? eventSequence + 1 : Long.parseLong(eventHistory.getFirst()[0]);
+            if (after >= 0 && after >= oldest - 1) {
+                missed = new ArrayList<>();
+                for (String[] event : eventHistory) {
+                    if (Long.parseLong(event[0]) > after) {
+                        missed.add(event);
+                    }
+                }
+            }
+            readyId = epoch + "-" + eventSequence;
+            eventStreams.add(queue);
+        }
+        long closeAt = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(Long.parseLong(options.getOrDefault("stream-millis", "-1")));
+        boolean closes = options.containsKey("stream-millis");
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            StringBuilder start = new StringBuilder("retry: 2000\n\n");
+            for (String[] event : missed != null ? missed : List.<String[]>of()) {
+                start.append(format(event));
+            }
+            start.append(format(new String[] { null, readyId, "ready", "{\"resync\":" + (missed == null) + "}" }));
+            write(out, start.toString());
+            while (!closes || System.nanoTime() < closeAt) {
+                String[] event = queue.poll(closes ? 100 : 15_000, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    write(out, format(event));
+                } else if (!closes) {
+                    write(out, ": keep-alive\n\n");
+                }
+            }
+        } catch (IOException e) {
+            // The client went away
+        } finally {
+            synchronized (eventHistory) {
+                eventStreams.remove(queue);
+            }
+        }
+    }
+
+    // Get the sequence number a stream resumes after, or -1 if the event ID is missing or from another run
+    private long resumePoint(String lastEventId) {
+        if (lastEventId == null || !lastEventId.startsWith(epoch + "-")) {
+            return -1;
+        }
+        try {
+            long after = Long.parseLong(lastEventId.substring(epoch.length() + 1));
+            return after <= eventSequence ? after : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String format(String[] event) {
+        return "id: " + event[1] + "\nevent: " + event[2] + "\ndata: " + event[3] + "\n\n";
+    }
+
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
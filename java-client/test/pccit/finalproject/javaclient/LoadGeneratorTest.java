@@ -0,0 +1,112 @@
+package pccit.finalproject.javaclient;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// LoadGenerator against the fault-injecting stub, read back from its JSON results. With the stub stalling for
+// 500 ms every 3 seconds, the calls a stall holds back are charged for it in both modes, rather than only the
+// calls that were in flight when it began; without stalls, calls that are merely slower than the rest of the
+// mix are not taken for stalled ones.
+class LoadGeneratorTest {
+    private static final String STALL = "3:500"; // From 2.5 to 3 s, 5.5 to 6 s, ... after startup
+
+    private FaultInjectingServer stub;
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void stopStub() {
+        if (stub != null) {
+            stub.stop();
+        }
+    }
+
+    @Test
+    void openLoopChargesStallsToTheCallsQueuedBehindThem() throws Exception {
+        startStub("--stall", STALL);
+        // One call in flight: each stall holds one call up, and every arrival meanwhile waits for its slot
+        Map<String, Object> all = run("--mode", "open", "--rate", "100", "--concurrency", "1", "--warmup", "1",
+                "--duration", "5");
+        double responseP99 = percentile(all, "responseMillis", "p99");
+        double serviceP99 = percentile(all, "serviceMillis", "p99");
+        assertTrue(responseP99 >= 200, "response p99 " + responseP99 + " ms");
+        assertTrue(responseP99 > 4 * serviceP99, "response p99 " + responseP99 + " ms, service " + serviceP99);
+        assertEquals(0L, number(all, "backfilled"));
+    }
+
+    @Test
+    void unpacedClosedLoopBackfillsTheCallsAStallHeldBack() throws Exception {
+        startStub("--stall", STALL);
+        Map<String, Object> all = run("--mode", "closed", "--concurrency", "4", "--warmup", "1", "--duration", "3");
+        assertTrue(percentile(all, "serviceMillis", "max") >= 450, "no call was stalled: " + all);
+        assertTrue(number(all, "backfilled") > 0, "nothing backfilled: " + all);
+    }
+
+    @Test
+    void unpacedClosedLoopDoesNotBackfillCallsThatAreOnlySlower() throws Exception {
+        // Every request sleeps 50 ms, so a page takes more than twice as long only after a pause of that length.
+        // The whole list of 100000 users takes several times as long as a page, and well over twice the mean of the
+        // mix.
+        startStub("--users", "100000", "--latency", "50");
+        Map<String, Object> all = run("--mode", "closed", "--concurrency", "1", "--mix", "page=9,list=1",
+                "--warmup", "3", "--duration", "5");
+        assertTrue(number(all, "calls") > 20, "too few calls: " + all);
+        assertEquals(0L, number(all, "backfilled"), all.toString());
+    }
+
+    private void startStub(String... args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        options.put("port", "0");
+        options.put("users", "500");
+        options.put("latency", "0");
+        for (int i = 0; i < args.length; i += 2) {
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        stub = new FaultInjectingServer(options);
+        stub.start();
+    }
+
+    // Run the generator against the stub and get the results of all calls
+    private Map<String, Object> run(String... args) throws Exception {
+        Path out = dir.resolve("results.json");
+        Map<String, String> options = new HashMap<>();
+        options.put("username", "admin");
+        options.put("password", "x");
+        options.put("mix", "page=1");
+        options.put("page-size", "10");
+        options.put("out", out.toString());
+        for (int i = 0; i < args.length; i += 2) {
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        LoadGenerator generator = new LoadGenerator(
+                new ApiClient("local", stub.getUrl(), ApiClient.defaultExecutor(), false), options);
+        generator.prepare();
+        generator.run();
+        assertEquals(0, generator.report(), "some calls failed");
+        Map<?, ?> results = JSONUtils.toObject(Files.readAllBytes(out), Map.class);
+        return cast(cast(results.get("calls")).get("all"));
+    }
+
+    private static double percentile(Map<String, Object> all, String latency, String percentile) {
+        return ((Number) cast(all.get(latency)).get(percentile)).doubleValue();
+    }
+
+    private static long number(Map<String, Object> all, String key) {
+        return ((Number) all.get(key)).longValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> cast(Object map) {
+        return (Map<String, Object>) map;
+    }
+}
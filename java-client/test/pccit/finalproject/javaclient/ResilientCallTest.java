@@ -0,0 +1,228 @@
+package pccit.finalproject.javaclient;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ApiClient's calls against the fault-injecting stub: hedging cuts the tail latency of a server that is now and
+// then slow, the circuit breaker opens during an outage and closes after it, and deadlines hold for the bodies
+// of the user list, pages and avatars and are not left behind by calls that completed
+class ResilientCallTest {
+    private static final String PAGE = "GET /users?limit";
+
+    private FaultInjectingServer stub;
+    private HttpServer stallingServer;
+    private final CountDownLatch releaseStall = new CountDownLatch(1);
+
+    @AfterEach
+    void stopServers() {
+        if (stub != null) {
+            stub.stop();
+        }
+        releaseStall.countDown();
+        if (stallingServer != null) {
+            stallingServer.stop(0);
+        }
+    }
+
+    @Test
+    void hedgingCutsTheTailLatency() throws Exception {
+        // One request in five takes 500 ms more; a hedge after the median misses only when both requests are slow
+        ApiClient client = startStub("--slow-rate", "0.2", "--slow-millis", "500");
+        client.setPolicy(PAGE, new EndpointPolicy(Duration.ofSeconds(5), Duration.ofSeconds(10), 1, true, 0));
+        List<Long> unhedged = pageLatencies(client, 100);
+        long hedgesBefore = metrics(client).getHedgeCount();
+        client.setPolicy(PAGE, new EndpointPolicy(Duration.ofSeconds(5), Duration.ofSeconds(10), 1, true, 0.5));
+        List<Long> hedged = pageLatencies(client, 100);
+
+        long unhedgedP90 = percentile(unhedged, 0.9);
+        long hedgedP90 = percentile(hedged, 0.9);
+        assertEquals(0, hedgesBefore);
+        assertTrue(unhedgedP90 >= 500, "unhedged p90 " + unhedgedP90 + " ms");
+        assertTrue(hedgedP90 < 250, "hedged p90 " + hedgedP90 + " ms, unhedged " + unhedgedP90 + " ms");
+        assertTrue(metrics(client).getHedgeCount() > 0);
+        assertTrue(metrics(client).getHedgeWinCount() > 0);
+    }
+
+    @Test
+    void breakerOpensDuringAnOutageAndClosesAfterIt() throws Exception {
+        ApiClient client = startStub("--outage", "0:3");
+        client.setPolicy(PAGE, new EndpointPolicy(Duration.ofSeconds(5), Duration.ofSeconds(10), 1, true, 0));
+        CircuitBreaker breaker = client.getCircuitBreaker();
+        for (int i = 0; i < 20; i++) {
+            assertEquals(503, failure(client.getUsersPageAsync(0, 10)).getStatusCode());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(ApiException.Kind.CIRCUIT_OPEN, failure(client.getUsersPageAsync(0, 10)).getKind());
+
+        // The outage ends after 3 s and the breaker lets a trial request through 5 s after it opened
+        long giveUpAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(15);
+        List<User> page = null;
+        while (page == null && System.nanoTime() < giveUpAt) {
+            try {
+                page = client.getUsersPageAsync(0, 10).join();
+            } catch (CompletionException e) {
+                Thread.sleep(200);
+            }
+        }
+        assertNotNull(page, "breaker never closed: " + breaker);
+        assertEquals(10, page.size());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(1, breaker.getOpenedCount());
+        assertTrue(breaker.getRejectedCount() > 0);
+    }
+
+    @Test
+    void streamedBodyThatStallsFailsAtTheDeadline() throws Exception {
+        ApiClient client = startStallingServer();
+        client.setPolicy("GET /users", new EndpointPolicy(Duration.ofSeconds(5), Duration.ofSeconds(1), 1, true, 0));
+
+        AtomicInteger received = new AtomicInteger();
+        long started = System.nanoTime();
+        ApiException error = failure(client.streamUsersAsync(1, batch -> received.addAndGet(batch.size())));
+        assertTimedOut(error, started);
+        assertEquals(2, received.get());
+        assertEquals(1, client.getMetrics().endpoint("GET /users").getDeadlineExceededCount());
+    }
+
+    @Test
+    void pageBodyThatStallsFailsAtTheDeadline() throws Exception {
+        ApiClient client = startStallingServer();
+        client.setPolicy(PAGE, new EndpointPolicy(Duration.ofSeconds(5), Duration.ofSeconds(1), 1, true, 0));
+
+        long started = System.nanoTime();
+        assertTimedOut(failure(client.getUsersPageAsync(0, 10)), started);
+        assertEquals(1, metrics(client).getDeadlineExceededCount());
+    }
+
+    @Test
+    void avatarBodyThatStallsFailsAtTheDeadline() throws Exception {
+        ApiClient client = startStallingServer();
+        client.setPolicy("GET avatar image",
+                new EndpointPolicy(Duration.ofSeconds(5), Duration.ofSeconds(1), 1, true, 0));
+
+        long started = System.nanoTime();
+        assertTimedOut(failure(client.getAvatarImageAsync("/images/avatar.png", null, null)), started);
+        assertEquals(1, client.getMetrics().endpoint("GET avatar image").getDeadlineExceededCount());
+    }
+
+    @Test
+    void streamedBodyWithoutDeadlineOutlastsThePolicyDeadline() throws Exception {
+        ApiClient client = startStallingServer();
+        client.setPolicy("GET /users", new EndpointPolicy(Duration.ofSeconds(5), Duration.ofSeconds(1), 1, true, 0));
+
+        CompletableFuture<Integer> export = client.streamUsersAsync(1, null, batch -> { });
+        Thread.sleep(1500);
+        assertFalse(export.isDone());
+        releaseStall.countDown(); // The rest of the body
+        assertEquals(2, export.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void completedCallsLeaveNoDeadlineTimers() throws Exception {
+        ApiClient client = startStub("--latency", "0");
+        int before = ResilientCall.pendingDeadlines();
+        for (int i = 0; i < 50; i++) {
+            client.getUsersPageAsync(0, 10).join();
+        }
+        // The timer is cancelled as the call completes, which may be just after join() returns
+        long giveUpAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (ResilientCall.pendingDeadlines() > before && System.nanoTime() < giveUpAt) {
+            Thread.sleep(10);
+        }
+        assertEquals(before, ResilientCall.pendingDeadlines());
+    }
+
+    private ApiClient startStub(String... args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        options.put("port", "0");
+        options.put("users", "100");
+        for (int i = 0; i < args.length; i += 2) {
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        stub = new FaultInjectingServer(options);
+        stub.start();
+        return new ApiClient("local", stub.getUrl(), ApiClient.defaultExecutor(), false);
+    }
+
+    // Start a server that sends the start of a body at once, then nothing more until releaseStall; the rest of
+    // the body follows if it is released before the test ends. Every path gets the same two-user list.
+    private ApiClient startStallingServer() throws IOException {
+        stallingServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stallingServer.createContext("/", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("[{\"id\":1,\"username\":\"user1\"},{\"id\":2,\"username\":\"user2\"}"
+                        .getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                releaseStall.await();
+                out.write(']');
+            } catch (InterruptedException | IOException e) {
+                // Done
+            }
+        });
+        stallingServer.start();
+        return new ApiClient("local", "http://localhost:" + stallingServer.getAddress().getPort(),
+                ApiClient.defaultExecutor(), false);
+    }
+
+    private static void assertTimedOut(ApiException error, long startedNanos) {
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+        assertEquals(ApiException.Kind.TIMEOUT, error.getKind(), error.toString());
+        assertTrue(elapsedMillis >= 900 && elapsedMillis < 5000, "failed after " + elapsedMillis + " ms");
+    }
+
+    // Time the given number of page calls, 20 at a time
+    private static List<Long> pageLatencies(ApiClient client, int calls) throws InterruptedException {
+        Semaphore permits = new Semaphore(20);
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            permits.acquire();
+            long started = System.nanoTime();
+            pending.add(client.getUsersPageAsync(0, 10).whenComplete((page, error) -> {
+                latencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                permits.release();
+            }));
+        }
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        return latencies;
+    }
+
+    private static long percentile(List<Long> latencies, double fraction) {
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return sorted.get((int) Math.ceil(fraction * sorted.size()) - 1);
+    }
+
+    private static EndpointMetrics metrics(ApiClient client) {
+        return client.getMetrics().endpoint(PAGE);
+    }
+
+    // Wait for a call that should fail and get its ApiException
+    private static ApiException failure(CompletableFuture<?> call) {
+        CompletionException error = assertThrows(CompletionException.class, call::join);
+        assertInstanceOf(ApiException.class, error.getCause(), error.toString());
+        return (ApiException) error.getCause();
+    }
+}
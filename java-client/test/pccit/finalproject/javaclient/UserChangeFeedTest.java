@@ -0,0 +1,91 @@
+package pccit.finalproject.javaclient;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// UserChangeFeed against the fault-injecting stub, whose event streams close after a while: a stream resumed
+// from its last event carries on without a reload, and one the server cannot resume asks for a reload
+class UserChangeFeedTest {
+    private FaultInjectingServer stub;
+    private UserChangeFeed feed;
+    private final AtomicInteger changes = new AtomicInteger();
+    private final AtomicInteger resyncs = new AtomicInteger();
+    private final CountDownLatch resynced = new CountDownLatch(1);
+
+    @AfterEach
+    void stop() {
+        if (feed != null) {
+            feed.close();
+        }
+        if (stub != null) {
+            stub.stop();
+        }
+    }
+
+    @Test
+    void resumedStreamNeedsNoReload() throws Exception {
+        startStub(0, "--churn", "50", "--stream-millis", "300");
+        subscribe();
+        feed.ready().get(5, TimeUnit.SECONDS);
+        Thread.sleep(3000); // Several streams closed and resumed
+        assertTrue(changes.get() > 0);
+        assertEquals(0, resyncs.get());
+    }
+
+    @Test
+    void restartedServerAsksForAReload() throws Exception {
+        startStub(0, "--stream-millis", "300");
+        subscribe();
+        feed.ready().get(5, TimeUnit.SECONDS);
+        // The new server has its own event IDs, so it cannot replay from the last one the feed received
+        int port = stub.getPort();
+        stub.stop();
+        startStub(port, "--stream-millis", "300");
+        assertTrue(resynced.await(15, TimeUnit.SECONDS), "no resync");
+    }
+
+    private void startStub(int port, String... args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        options.put("port", Integer.toString(port));
+        options.put("users", "100");
+        for (int i = 0; i < args.length; i += 2) {
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        stub = new FaultInjectingServer(options);
+        stub.start();
+    }
+
+    private void subscribe() {
+        ApiClient client = new ApiClient("local", stub.getUrl(), ApiClient.defaultExecutor(), false);
+        feed = client.subscribeUserChanges(new UserChangeFeed.Listener() {
+            @Override
+            public void onUserChanged(User user) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void onUserDeleted(String node, int id) {
+                changes.incrementAndGet();
+            }
+
+            @Override
+            public void onResync(String node) {
+                resyncs.incrementAndGet();
+                resynced.countDown();
+            }
+
+            @Override
+            public void onClosed(String node, Throwable error) {
+            }
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package pccit.finalproject.javaclient;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// UserSearchIndex: updates are only queued by the caller, and a search sees every update made before it
+class UserSearchIndexTest {
+    private final UserSearchIndex index = new UserSearchIndex();
+
+    @Test
+    void searchSeesEveryEarlierUpdate() throws Exception {
+        index.put(1, "john", "John Smith", "user");
+        index.put(2, "jane", "Jane Doe", "admin");
+        index.put(3, "bob", "Robert Johnson", "user");
+        assertEquals(bits(1, 3), search("john"));
+        assertEquals(bits(1, 2, 3), search("j"));
+        assertEquals(bits(2), search("ja"));
+        assertEquals(bits(3), search("ohn user rob"));
+
+        index.remove(1);
+        index.put(2, "jane", "Jane Johnston", "admin");
+        assertEquals(bits(2, 3), search("john"));
+        assertEquals(2, index.size());
+
+        index.clear();
+        assertEquals(bits(), search("john"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void blankQueryMeansNoFilter() throws Exception {
+        index.put(1, "john", null, "user");
+        assertNull(search("  "));
+    }
+
+    @Test
+    void updatesDoNotWaitForARunningSearch() throws Exception {
+        for (int id = 0; id < 1000; id++) {
+            index.put(id, "user" + id, "Test User", "user");
+        }
+        // Hold the search thread in a consumer, as a long search would
+        CountDownLatch release = new CountDownLatch(1);
+        index.search("user", matches -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        long started = System.nanoTime();
+        for (int id = 1000; id < 2000; id++) {
+            index.put(id, "user" + id, "Test User", "user");
+        }
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1), "updates blocked");
+        release.countDown();
+        assertEquals(2000, search("test").cardinality());
+    }
+
+    private BitSet search(String query) throws Exception {
+        CompletableFuture<BitSet> result = new CompletableFuture<>();
+        index.search(query, result::complete);
+        return result.get(10, TimeUnit.SECONDS);
+    }
+
+    private static BitSet bits(int... ids) {
+        BitSet bits = new BitSet();
+        for (int id : ids) {
+            bits.set(id);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,99 @@
+package pccit.finalproject.javaclient;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.JTable;
+import javax.swing.table.TableRowSorter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// UserTableModel attached to a JTable with a row sorter, as AdminInterface uses it. The sorter looks rows up
+// again on every event, so it fails as soon as an event does not match the model.
+class UserTableModelTest {
+    private UserTableModel model;
+    private JTable table;
+
+    @BeforeEach
+    void setUp() {
+        model = new UserTableModel();
+        table = new JTable(model);
+        table.setRowSorter(new TableRowSorter<>(model));
+        model.mergeUsers(users(1, 10));
+    }
+
+    @Test
+    void removingAllButAMiddleRowKeepsTheSorterInStep() {
+        model.removeUsers("local", List.of(1, 2, 3, 4, 6, 7, 8, 9, 10));
+        assertEquals(List.of(5), ids());
+        assertEquals(1, table.getRowCount());
+        assertEquals(5, table.getValueAt(0, UserTableModel.ID_COLUMN));
+    }
+
+    @Test
+    void removingManyRunsKeepsTheSorterInStep() {
+        model.mergeUsers(users(11, 100));
+        List<Integer> odd = IntStream.rangeClosed(1, 100).filter(id -> id % 2 == 1).boxed()
+                .collect(Collectors.toList());
+        model.removeUsers("local", odd);
+        assertEquals(IntStream.rangeClosed(1, 50).map(i -> i * 2).boxed().collect(Collectors.toList()), ids());
+        assertEquals(50, table.getRowCount());
+        assertEquals(2, table.getValueAt(0, UserTableModel.ID_COLUMN));
+    }
+
+    @Test
+    void removingUsersOfSeveralNodesAtOnceKeepsTheSorterInStep() {
+        List<User> other = users(1, 10);
+        other.forEach(user -> user.setNode("other"));
+        model.mergeUsers(other);
+        model.removeUsers(Map.of("local", List.of(2, 3, 9), "other", List.of(1, 5, 42)));
+        assertEquals(List.of(1, 4, 5, 6, 7, 8, 10, 2, 3, 4, 6, 7, 8, 9, 10), ids());
+        assertEquals(15, table.getRowCount());
+        assertEquals(-1, model.indexOfId("other", 5));
+        assertEquals(8, model.indexOfId("other", 3));
+    }
+
+    @Test
+    void endRefreshRemovesRowsNotReceived() {
+        model.beginRefresh();
+        model.mergeUsers(users(4, 6));
+        model.endRefresh(Set.of());
+        assertEquals(List.of(4, 5, 6), ids());
+        assertEquals(3, table.getRowCount());
+        assertEquals(-1, model.indexOfId("local", 1));
+        assertEquals(0, model.indexOfId("local", 4));
+    }
+
+    @Test
+    void endRefreshKeepsRowsOfIncompleteNodes() {
+        model.beginRefresh();
+        model.mergeUsers(users(4, 6));
+        model.endRefresh(Set.of("local"));
+        assertEquals(10, table.getRowCount());
+    }
+
+    private List<Integer> ids() {
+        List<Integer> ids = new ArrayList<>();
+        for (int row = 0; row < model.getRowCount(); row++) {
+            ids.add(model.getStore().getId(row));
+        }
+        return ids;
+    }
+
+    private static List<User> users(int from, int to) {
+        List<User> users = new ArrayList<>();
+        for (int id = from; id <= to; id++) {
+            User user = new User("user" + id, "user");
+            user.setId(id);
+            user.setNode("local");
+            users.add(user);
+        }
+        return users;
+    }
+}